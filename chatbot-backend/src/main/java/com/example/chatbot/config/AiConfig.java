@@ -2,6 +2,7 @@ package com.example.chatbot.config;
 
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Bean;
@@ -10,6 +11,11 @@ import org.springframework.context.annotation.Bean;
 public class AiConfig {
     @Bean
     public ChatClient chatClient(OllamaChatModel model){
+        return buildChatClient(model);
+    }
+
+    // 默认节点和路由到的其他节点使用相同的默认设置
+    public static ChatClient buildChatClient(ChatModel model) {
         return ChatClient
                 .builder(model)
                 .defaultSystem("你的名字是强哥，一个AI智能助手")
@@ -2,8 +2,11 @@ package com.example.chatbot.config;
 
 import com.example.chatbot.properties.ThreadPoolProperties;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.task.DelegatingSecurityContextAsyncTaskExecutor;
@@ -12,6 +15,7 @@ import reactor.core.scheduler.Schedulers;
 
 import java.util.concurrent.Executor;
 
+@Slf4j
 @Configuration
 @EnableAsync
 @RequiredArgsConstructor
@@ -20,8 +24,12 @@ public class ThreadPoolConfig {
     
     @Bean
     public Executor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         ThreadPoolProperties.PoolConfig config = threadPoolProperties.getAsync();
+        if (useVirtualThreads(threadPoolProperties)) {
+            // 每个任务一个虚拟线程，安全上下文的传递方式与线程池相同
+            return new DelegatingSecurityContextAsyncTaskExecutor(virtualThreadExecutor(config.getThreadNamePrefix()));
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(config.getCoreSize());
         executor.setMaxPoolSize(config.getMaxSize());
         executor.setQueueCapacity(config.getQueueCapacity());
@@ -31,8 +39,38 @@ public class ThreadPoolConfig {
         return new DelegatingSecurityContextAsyncTaskExecutor(executor);
     }
     
-    @Bean
-    public Scheduler elasticScheduler() {
-        return Schedulers.fromExecutor(taskExecutor());
+    /**
+     * 响应式链路中的阻塞调用（JDBC）在有界线程池中执行，线程数固定，不随并发请求数增长
+     * 使用虚拟线程时每个调用一个虚拟线程，并发数由数据库连接池限制
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler() {
+        ThreadPoolProperties.PoolConfig config = threadPoolProperties.getJdbc();
+        if (useVirtualThreads(threadPoolProperties)) {
+            return Schedulers.fromExecutor(virtualThreadExecutor(config.getThreadNamePrefix()));
+        }
+        return Schedulers.newBoundedElastic(config.getMaxSize(), config.getQueueCapacity(),
+                config.getThreadNamePrefix(), config.getKeepAliveSeconds(), true);
+    }
+
+    /**
+     * 是否使用虚拟线程：需要开启配置且运行在JDK 21及以上
+     */
+    public static boolean useVirtualThreads(ThreadPoolProperties properties) {
+        if (!properties.isVirtualThreads()) {
+            return false;
+        }
+        if (Runtime.version().feature() < 21) {
+            log.warn("Virtual threads require JDK 21+, running on JDK {}; falling back to thread pools",
+                    Runtime.version().feature());
+            return false;
+        }
+        return true;
+    }
+
+    public static AsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
     }
-} 
\ No newline at end of file
+}
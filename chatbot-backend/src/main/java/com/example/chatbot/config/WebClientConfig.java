@@ -0,0 +1,31 @@
+package com.example.chatbot.config;
+
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@Configuration
+public class WebClientConfig {
+
+    /**
+     * 访问knowledge-service的非阻塞客户端，与KnowledgeClient一样通过服务发现负载均衡
+     * Spring Boot提供的WebClient.Builder是原型Bean，在这里添加过滤器不会影响Spring AI的Ollama客户端
+     */
+    @Bean
+    public WebClient knowledgeWebClient(WebClient.Builder webClientBuilder,
+                                        ReactorLoadBalancerExchangeFilterFunction loadBalancerFilter) {
+        return webClientBuilder
+                .baseUrl("http://knowledge-service")
+                .filter(loadBalancerFilter)
+                .build();
+    }
+
+    /**
+     * 访问向量化等固定地址服务的非阻塞客户端
+     */
+    @Bean
+    public WebClient plainWebClient(WebClient.Builder webClientBuilder) {
+        return webClientBuilder.build();
+    }
+}
@@ -14,16 +14,19 @@ public class WebMvcConfig implements WebMvcConfigurer {
     
     @Override
     public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         ThreadPoolProperties.PoolConfig config = threadPoolProperties.getMvc();
-        executor.setCorePoolSize(config.getCoreSize());
-        executor.setMaxPoolSize(config.getMaxSize());
-        executor.setQueueCapacity(config.getQueueCapacity());
-        executor.setThreadNamePrefix(config.getThreadNamePrefix());
-        executor.setKeepAliveSeconds(config.getKeepAliveSeconds());
-        executor.initialize();
-        
-        configurer.setTaskExecutor(executor);
+        if (ThreadPoolConfig.useVirtualThreads(threadPoolProperties)) {
+            configurer.setTaskExecutor(ThreadPoolConfig.virtualThreadExecutor(config.getThreadNamePrefix()));
+        } else {
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(config.getCoreSize());
+            executor.setMaxPoolSize(config.getMaxSize());
+            executor.setQueueCapacity(config.getQueueCapacity());
+            executor.setThreadNamePrefix(config.getThreadNamePrefix());
+            executor.setKeepAliveSeconds(config.getKeepAliveSeconds());
+            executor.initialize();
+            configurer.setTaskExecutor(executor);
+        }
         if (config.getTimeoutMilliseconds() != null) {
             configurer.setDefaultTimeout(config.getTimeoutMilliseconds());
         }
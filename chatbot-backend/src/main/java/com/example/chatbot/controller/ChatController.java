@@ -7,6 +7,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
@@ -29,39 +30,38 @@ public class ChatController {
     }
 
     @PostMapping(value = "/send/reactive", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> chatReactive(@RequestBody ChatRequest request) {
+    public Flux<ServerSentEvent<String>> chatReactive(@RequestBody ChatRequest request) {
         if (request.getModelId() == null) {
             request.setModelId("qwen3");
         }
         
-        // 用于跟踪是否已经过了think块
-        final boolean[] passedThinkBlock = {false};
-        
-        return chatService.processMessageReactive(request)
-                .mapNotNull(response -> {
-                    try {
-                        String message = response.getMessage();
-                        
-                        // 如果遇到</think>，标记可以开始发送内容
-                        if (!passedThinkBlock[0] && message.contains("</think>")) {
-                            passedThinkBlock[0] = true;
-                            return null;
-                        }
-                        
-                        // 只有在过了think块后才发送内容
-                        if (passedThinkBlock[0]) {
-                            // 移除开头的换行符
-                            message = message.replaceAll("^\\n+", "");
-                            response.setMessage(message);
-                            return objectMapper.writeValueAsString(response);
-                        }
-                        
-                        return null;
-                    } catch (Exception e) {
-                        return "data: {\"error\": \"" + e.getMessage() + "\"}\n\n";
-                    }
-                })
-                .filter(str -> str != null && !str.trim().isEmpty()); // 过滤掉空消息和think块内容
+        // 思考过程已在服务层去除，这里只负责序列化
+        return chatService.processMessageReactive(request).map(this::toEvent);
+    }
+
+    /**
+     * 断线重连后续传回答：补发序号大于Last-Event-ID的帧，回答未结束时继续接收，不会重新调用模型。
+     * 两个接口的每一帧都以sequence作为事件id，客户端断线后把最后收到的id作为Last-Event-ID发送。
+     */
+    @GetMapping(value = "/send/reactive/{messageId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> resumeReactive(@PathVariable String messageId,
+                                                        @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return chatService.resumeMessageReactive(messageId, lastEventId != null ? lastEventId : 0L)
+                .map(this::toEvent);
+    }
+
+    private ServerSentEvent<String> toEvent(ChatResponse response) {
+        return ServerSentEvent.builder(toJson(response))
+                .id(response.getSequence() != null ? String.valueOf(response.getSequence()) : null)
+                .build();
+    }
+
+    private String toJson(ChatResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (Exception e) {
+            return "{\"error\": \"" + e.getMessage() + "\"}";
+        }
     }
 
     @GetMapping("/models")
@@ -1,14 +1,20 @@
 package com.example.chatbot.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Builder;
+import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class ChatResponse {
     private String message;
     private String sessionId;
     private String role;
     private String modelId;
-    private String sequence;
+    private String messageId;
+    private Long sequence;
+    private Boolean truncated;
 } 
\ No newline at end of file
@@ -14,7 +14,7 @@ public class ChatMessage {
     private String content;
 
     @TableField("role")
-    private String role; // "user" or "assistant"
+    private String role; // "user", "assistant" or "summary"
 
     @TableField(value = "created_at", fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
@@ -25,6 +25,9 @@ public class ChatMessage {
     @TableField("user_id")
     private Long userId;
 
+    @TableField("truncated")
+    private Boolean truncated; // 生成被取消时保存的部分回答
+
     @TableField(exist = false)
     private User user;
 } 
\ No newline at end of file
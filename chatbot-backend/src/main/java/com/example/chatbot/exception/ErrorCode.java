@@ -18,8 +18,12 @@ public enum ErrorCode {
     // 参数验证错误 (3000-3999)
     INVALID_PARAMETER(HttpStatus.BAD_REQUEST, "VALID_001", "输入参数有误"),
     
+    // 对话相关错误 (4000-4999)
+    STREAM_NOT_FOUND(HttpStatus.NOT_FOUND, "CHAT_001", "回答不存在或已过期，请重新提问"),
+    
     // 系统错误 (5000-5999)
-    INTERNAL_SERVER_ERROR(HttpStatus.INTERNAL_SERVER_ERROR, "SYS_001", "服务器内部错误");
+    INTERNAL_SERVER_ERROR(HttpStatus.INTERNAL_SERVER_ERROR, "SYS_001", "服务器内部错误"),
+    MODEL_BUSY(HttpStatus.TOO_MANY_REQUESTS, "SYS_002", "模型繁忙，请稍后重试");
 
     private final HttpStatus httpStatus;
     private final String code;
@@ -1,6 +1,7 @@
 package com.example.chatbot.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -23,6 +24,14 @@ public class GlobalExceptionHandler {
             .body(ApiResponse.error(ex.getErrorCode()));
     }
 
+    @ExceptionHandler(ModelBusyException.class)
+    public ResponseEntity<ApiResponse<Void>> handleModelBusyException(ModelBusyException ex) {
+        return ResponseEntity
+            .status(ex.getHttpStatus())
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(ApiResponse.error(ex.getErrorCode()));
+    }
+
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<ApiResponse<Void>> handleBadCredentialsException(BadCredentialsException ex) {
         return ResponseEntity
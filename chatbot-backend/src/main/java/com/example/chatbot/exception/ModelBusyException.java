@@ -0,0 +1,16 @@
+package com.example.chatbot.exception;
+
+import lombok.Getter;
+
+/**
+ * 模型并发已满且等待队列已满或等待超时，携带建议的重试间隔
+ */
+@Getter
+public class ModelBusyException extends BusinessException {
+    private final long retryAfterSeconds;
+
+    public ModelBusyException(String message, long retryAfterSeconds) {
+        super(ErrorCode.MODEL_BUSY, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
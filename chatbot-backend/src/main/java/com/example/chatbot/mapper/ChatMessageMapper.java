@@ -5,19 +5,39 @@ import com.example.chatbot.entity.ChatMessage;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
 public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
-    @Select("SELECT * FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId} ORDER BY created_at ASC")
+    @Select("SELECT * FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId} AND role <> 'summary' ORDER BY created_at ASC")
     List<ChatMessage> findBySessionIdAndUserIdOrderByCreatedAtAsc(String sessionId, Long userId);
     
-    @Select("SELECT * FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId} ORDER BY created_at DESC LIMIT 20")
-    List<ChatMessage> findLast10BySessionIdAndUserIdOrderByCreatedAtDesc(String sessionId, Long userId);
+    @Select("SELECT * FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId} AND role <> 'summary' ORDER BY created_at DESC LIMIT #{limit}")
+    List<ChatMessage> findRecentBySessionIdAndUserIdOrderByCreatedAtDesc(@Param("sessionId") String sessionId,
+                                                                        @Param("userId") Long userId,
+                                                                        @Param("limit") int limit);
 
     @Select("SELECT * FROM (SELECT DISTINCT ON (session_id) session_id, created_at FROM chat_messages WHERE user_id = #{userId} ORDER BY session_id, created_at DESC) t ORDER BY created_at DESC")
     List<String> findDistinctSessionIdByUserId(Long userId);
 
     @Delete("DELETE FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId}")
     void deleteBySessionIdAndUserId(String sessionId, Long userId);
+
+    @Select("SELECT * FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId} AND role = 'summary' ORDER BY created_at DESC LIMIT 1")
+    ChatMessage findLatestSummary(String sessionId, Long userId);
+
+    @Select("<script>SELECT * FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId} AND role &lt;&gt; 'summary'" +
+            "<if test='after != null'> AND created_at &gt; #{after}</if> ORDER BY created_at ASC</script>")
+    List<ChatMessage> findMessagesAfter(@Param("sessionId") String sessionId, @Param("userId") Long userId,
+                                        @Param("after") LocalDateTime after);
+
+    @Insert("<script>INSERT INTO chat_messages (content, role, created_at, session_id, user_id, truncated) VALUES " +
+            "<foreach collection='messages' item='m' separator=','>" +
+            "(#{m.content}, #{m.role}, #{m.createdAt}, #{m.sessionId}, #{m.userId}, " +
+            "COALESCE(#{m.truncated,jdbcType=BOOLEAN}, FALSE))" +
+            "</foreach></script>")
+    int insertBatch(@Param("messages") List<ChatMessage> messages);
 } 
\ No newline at end of file
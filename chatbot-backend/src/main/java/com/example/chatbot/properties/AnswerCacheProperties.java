@@ -0,0 +1,16 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.answer-cache")
+public class AnswerCacheProperties {
+    private boolean enabled = true;  // 是否启用语义答案缓存
+    private double similarityThreshold = 0.95;  // 问题向量的余弦相似度不低于该值时视为同一问题
+    private int maxEntries = 1000;  // 缓存的最大答案数量，超出后按访问频率淘汰
+    private long ttlMinutes = 60;  // 答案的过期时间（分钟）
+    private long embeddingTimeoutMilliseconds = 300;  // 问题向量化的超时时间（毫秒），超时后本次请求不使用缓存
+}
@@ -0,0 +1,18 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.history")
+public class ChatHistoryProperties {
+    private int windowSize = 20;  // 每个会话缓存的最近消息条数，即发送给模型的历史消息上限
+    private long cacheTtlMinutes = 30;  // 会话历史缓存的过期时间（分钟），每次读写都会续期
+    private boolean summaryEnabled = true;  // 是否将较早的对话压缩为摘要
+    private int summaryThreshold = 16;  // 摘要之后的消息达到该条数时触发压缩
+    private int keepRecentMessages = 6;  // 压缩时保留原文的最近消息条数
+    private int summaryMaxLength = 500;  // 摘要的最大字数
+    private String summaryModelId = "qwen3";  // 生成摘要使用的模型ID
+}
@@ -0,0 +1,12 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.coalescing")
+public class CoalescingProperties {
+    private boolean enabled = false;  // 是否合并相同的并发提问，默认关闭
+}
@@ -15,4 +15,9 @@ public class KeywordExtractorProperties {
     private int defaultKeywordCount;
     private List<String> stopWords;
     private List<String> commonPhrases;
+    private long cacheMaximumWeight = 2_000_000;  // 关键词缓存的容量，按缓存文本和关键词的总字符数计算
+    private long cacheExpireAfterWriteMinutes = 60;  // 关键词缓存写入后的过期时间
+    private int segmenterPoolSize;  // 并发分词使用的分词器数量，0表示与CPU核数相同
+    private int articleParallelThreshold = 20_000;  // 文章字符数达到该值时并行处理各段落，0表示始终串行
+    private int articleParallelism;  // 并行处理段落的线程数，0表示与CPU核数相同
 } 
\ No newline at end of file
@@ -23,5 +23,13 @@ public class ModelProperties {
         private Double presencePenalty;  // 存在惩罚，控制模型避免重复内容的程度。范围[-2,2]，默认0.0
         private Double frequencyPenalty;  // 频率惩罚，控制模型避免重复使用相同词的程度。范围[-2,2]，默认0.0
         private List<String> stop;  // 停止序列，当生成文本包含这些序列时停止生成
+        private String keepAlive;  // 请求结束后模型在Ollama中保持加载的时间，如30m；保持加载才能复用已计算的提示词前缀
+        private Integer numCtx;  // 上下文窗口大小，同一模型需保持不变，变化会导致Ollama重新加载模型
+        private List<String> endpoints;  // 部署该模型的Ollama节点地址，为空时使用spring.ai.ollama.base-url
+        private Integer maxConcurrency;  // 同时进行的最大生成请求数，为空时不限制
+        private Integer maxQueued;  // 并发已满时最多排队等待的请求数，队列已满的请求立即被拒绝
+        private Integer maxQueuedPerUser;  // 单个用户最多排队等待的请求数，避免一个用户占满等待队列
+        private Long queueTimeoutMilliseconds;  // 排队等待的最长时间，超时的请求被拒绝
+        private Integer retryAfterSeconds;  // 请求被拒绝时通过Retry-After建议客户端的重试间隔
     }
 } 
\ No newline at end of file
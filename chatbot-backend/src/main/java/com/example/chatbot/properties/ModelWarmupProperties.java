@@ -0,0 +1,19 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.warmup")
+public class ModelWarmupProperties {
+    private boolean enabled = true;  // 是否启用模型预热和保活
+    private boolean warmUpOnStartup = true;  // 启动时是否预加载所有配置的模型
+    private long checkIntervalSeconds = 60;  // 检查模型加载状态的间隔（秒）
+    private long trafficWindowMinutes = 10;  // 该时间内有请求的模型被卸载后会重新加载
+    private String pinnedModelId;  // 常驻内存的模型ID，为空时不固定
+    private boolean pinHottest = false;  // 未指定常驻模型时，是否固定最近请求最多的模型
+    private long connectTimeoutMilliseconds = 2000;  // 连接Ollama的超时时间（毫秒）
+    private long readTimeoutMilliseconds = 120000;  // 等待Ollama响应的超时时间（毫秒），需覆盖加载最大模型的耗时
+}
@@ -0,0 +1,21 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.prompt")
+public class PromptProperties {
+    private int maxTokens = 6144;  // 提示词的总token预算（不含模型输出），需小于模型的上下文窗口
+    // 三个比例按总和归一化后使用；系统提示词未用完的预算归文档，文档未用完的预算归历史消息
+    private double systemShare = 0.1;  // 系统提示词可占用的预算比例
+    private double documentShare = 0.5;  // 知识库文档可占用的预算比例
+    private double historyShare = 0.4;  // 历史消息可占用的预算比例
+    private int maxDocumentTokens = 1500;  // 单篇文档最多占用的token数，避免一篇长文档挤掉其他文档
+    private int minDocumentTokens = 64;  // 文档需要截断且剩余预算不足该值时直接丢弃
+    // 历史消息超出预算时一次丢弃较多的早期消息，使历史的起点在之后若干轮对话中保持不变，模型可以复用前缀的计算结果
+    private double historyReanchorShare = 0.6;  // 重新确定历史起点后，历史消息最多占用的历史预算比例
+    private int maxTrackedSessions = 10000;  // 本地记录提示词前缀状态的最大会话数
+}
@@ -0,0 +1,14 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.retrieval")
+public class RetrievalProperties {
+    private long timeoutMilliseconds = 800;  // 单次检索的总时间预算（毫秒），超时未返回的数据源会被取消
+    private int topK = 5;  // 融合排序后放入提示词的文档数量，也是向量检索返回的文档数量
+    private int rrfK = 60;  // 倒数排名融合的平滑常数，越大时各名次之间的得分差距越小
+}
@@ -0,0 +1,15 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.routing")
+public class RoutingProperties {
+    private long failureCooldownSeconds = 30;  // 节点请求失败后暂停分配请求的时间（秒）
+    private double ttftSmoothing = 0.3;  // 首个输出延迟滑动平均的权重，越大越偏向最近的请求
+    private int maxAttempts = 2;  // 未收到任何输出就失败时，最多尝试的节点数
+    private boolean sessionAffinity = true;  // 是否将同一会话的请求固定到同一节点，复用节点上的提示词前缀
+}
@@ -0,0 +1,17 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.stream")
+public class StreamProperties {
+    private int frameMaxBytes = 512;  // 一帧累计的最大字节数（UTF-8），达到后立即发送
+    private long frameMaxDelayMilliseconds = 20;  // 一帧中第一个片段最多等待的时间，为0时不合并
+    private boolean resumeEnabled = true;  // 是否记录流式回答，供断线重连后续传
+    private long resumeTtlSeconds = 300;  // 流式回答在Redis中保留的时间，每写入一帧后重新计时
+    private long resumePollMilliseconds = 200;  // 续传其他实例上进行中的回答时，轮询Redis的间隔
+    private long disconnectGraceMilliseconds = 15000;  // 客户端全部断开后等待重连的时间，超过后取消模型生成
+}
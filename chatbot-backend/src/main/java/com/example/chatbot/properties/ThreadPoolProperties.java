@@ -8,8 +8,11 @@ import org.springframework.stereotype.Component;
 @Component
 @ConfigurationProperties(prefix = "thread-pool")
 public class ThreadPoolProperties {
+    private boolean virtualThreads;  // 使用虚拟线程代替固定大小的线程池，需要JDK 21及以上，低版本JDK仍使用线程池
+    private long pinnedThresholdMilliseconds = 20;  // 虚拟线程被固定在载体线程上超过该时间时记录日志和指标
     private PoolConfig async;
     private PoolConfig mvc;
+    private PoolConfig jdbc;  // 响应式链路中执行JDBC等阻塞调用的有界线程池，只使用maxSize、queueCapacity、threadNamePrefix和keepAliveSeconds
 
     @Data
     public static class PoolConfig {
@@ -0,0 +1,21 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.write-behind")
+public class WriteBehindProperties {
+    private QueueConfig knowledgeCache = new QueueConfig();
+    private QueueConfig chatMessage = new QueueConfig();
+
+    @Data
+    public static class QueueConfig {
+        private int capacity = 1000;  // 队列最大容量
+        private int batchSize = 50;  // 每批写入的最大条数，积压达到该值时立即触发写入
+        private long flushIntervalMilliseconds = 200;  // 定时写入间隔（毫秒）
+        private long offerTimeoutMilliseconds = 0;  // 队列已满时等待空位的最长时间（毫秒），仅用于不能丢弃的队列
+    }
+}
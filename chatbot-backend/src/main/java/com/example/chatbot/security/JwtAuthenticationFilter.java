@@ -1,6 +1,7 @@
 package com.example.chatbot.security;
 
 import com.example.chatbot.service.TokenBlacklistService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -34,10 +35,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && jwtTokenProvider.validateToken(jwt) && !tokenBlacklistService.isBlacklisted(jwt)) {
-                String username = jwtTokenProvider.getUsernameFromJWT(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                
+            Claims claims = StringUtils.hasText(jwt) ? jwtTokenProvider.parseClaims(jwt) : null;
+            if (claims != null && !tokenBlacklistService.isBlacklisted(jwt)) {
+                // 身份直接从令牌声明恢复；升级前签发的令牌没有用户ID，仍从数据库加载
+                UserDetails userDetails = jwtTokenProvider.getPrincipal(claims);
+                if (userDetails == null) {
+                    userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                }
+
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -5,15 +5,21 @@ import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.StringUtils;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
 public class JwtTokenProvider {
+    private static final String ROLES_CLAIM = "roles";
+    private static final String USER_ID_CLAIM = "uid";
 
     @Value("${jwt.secret}")
     private String jwtSecret;
@@ -35,15 +41,56 @@ public class JwtTokenProvider {
         Date currentDate = new Date();
         Date expireDate = new Date(currentDate.getTime() + jwtExpirationInMs);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(username)
-                .claim("roles", roles)
+                .claim(ROLES_CLAIM, roles);
+        // 写入用户ID，后续请求直接从令牌恢复身份，不再查询用户表
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            builder.claim(USER_ID_CLAIM, principal.getId());
+        }
+        return builder
                 .setIssuedAt(new Date())
                 .setExpiration(expireDate)
                 .signWith(getSigningKey())
                 .compact();
     }
 
+    /**
+     * 校验令牌并解析其中的声明
+     *
+     * @param token JWT令牌
+     * @return 令牌中的声明，令牌无效或已过期时返回null
+     */
+    public Claims parseClaims(String token) {
+        try {
+            return Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 根据令牌声明构建用户身份
+     *
+     * @param claims 已校验的令牌声明
+     * @return 用户身份，旧令牌中没有用户ID时返回null
+     */
+    public UserPrincipal getPrincipal(Claims claims) {
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        if (userId == null) {
+            return null;
+        }
+        String roles = claims.get(ROLES_CLAIM, String.class);
+        List<SimpleGrantedAuthority> authorities = StringUtils.hasText(roles)
+                ? Arrays.stream(roles.split(",")).map(SimpleGrantedAuthority::new).toList()
+                : List.of();
+        return new UserPrincipal(userId.longValue(), claims.getSubject(), null, authorities);
+    }
+
     public String getUsernameFromJWT(String token) {
         return Jwts.parserBuilder()
                 .setSigningKey(getSigningKey())
@@ -35,10 +35,6 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                 .map(SimpleGrantedAuthority::new)
                 .collect(Collectors.toList());
         
-        return org.springframework.security.core.userdetails.User
-                .withUsername(user.getUsername())
-                .password(user.getPassword())
-                .authorities(authorities)
-                .build();
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(), authorities);
     }
 } 
\ No newline at end of file
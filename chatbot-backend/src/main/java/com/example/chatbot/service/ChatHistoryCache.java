@@ -0,0 +1,193 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.ChatMessage;
+import com.example.chatbot.mapper.ChatMessageMapper;
+import com.example.chatbot.properties.ChatHistoryProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 会话最近消息窗口缓存
+ *
+ * 每个会话在Redis列表中保存最近的若干条消息，新消息保存时追加到列表末尾并裁剪到窗口大小，
+ * 构建历史上下文时直接读取列表，只有缓存未命中时才查询数据库并回填。
+ * 数据库中没有消息的新会话回填一个空占位，第一轮保存的消息可以直接追加，第二轮不需要再查询数据库，
+ * 也不会读到写回队列中尚未写入数据库的消息。回填只在列表不存在时写入，不会覆盖并发追加的消息。
+ * 会话的最新摘要单独缓存，没有摘要的会话缓存一个空占位，避免每次请求都查询数据库。
+ * 聊天链路上的读取和追加使用响应式Redis客户端，数据库回源在有界的JDBC线程池中执行，不阻塞调用线程。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatHistoryCache {
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    private final ChatMessageMapper chatMessageMapper;
+    private final ChatHistoryProperties historyProperties;
+    private final Scheduler jdbcScheduler;
+
+    private static final String HISTORY_KEY = "chat:history:";
+    private static final String SUMMARY_KEY = "chat:summary:";
+
+    // 列表不存在时才写入，查询数据库之前的快照不会覆盖期间追加的消息
+    private static final RedisScript<Long> FILL_IF_ABSENT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('RPUSH', KEYS[1], unpack(ARGV)) return 1", Long.class);
+
+    /**
+     * 获取会话最近的消息，按时间正序排列；缓存未命中时在JDBC线程池中查询数据库并回填
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     * @return 最近的消息列表
+     */
+    public Mono<List<ChatMessage>> getRecentMessages(String sessionId, Long userId) {
+        String key = historyKey(sessionId, userId);
+        return reactiveRedisTemplate.opsForList().range(key, 0, -1)
+                .cast(ChatMessage.class)
+                .collectList()
+                .flatMap(cached -> cached.isEmpty() ? Mono.<List<ChatMessage>>empty()
+                        : reactiveRedisTemplate.expire(key, ttl()).thenReturn(withoutPlaceholder(cached)))
+                .onErrorResume(e -> {
+                    log.warn("Failed to read chat history cache for session {}, falling back to database", sessionId, e);
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> loadRecentMessages(key, sessionId, userId)));
+    }
+
+    // 缓存未命中，从数据库加载最近的消息并回填缓存
+    private Mono<List<ChatMessage>> loadRecentMessages(String key, String sessionId, Long userId) {
+        return Mono.fromCallable(() -> {
+                    List<ChatMessage> history = chatMessageMapper.findRecentBySessionIdAndUserIdOrderByCreatedAtDesc(
+                            sessionId, userId, historyProperties.getWindowSize());
+                    // 反转列表以保持时间顺序
+                    Collections.reverse(history);
+                    return history;
+                })
+                .subscribeOn(jdbcScheduler)
+                .flatMap(history -> fill(key, history).thenReturn(history));
+    }
+
+    /**
+     * 将新保存的消息追加到会话窗口中；会话尚未缓存时不做处理，下次读取时会从数据库完整加载。
+     * 新会话在第一轮读取历史时已回填占位，消息可以直接追加
+     *
+     * @param message 已保存的消息
+     */
+    public Mono<Void> append(ChatMessage message) {
+        String key = historyKey(message.getSessionId(), message.getUserId());
+        return reactiveRedisTemplate.opsForList().rightPushIfPresent(key, message)
+                .then(reactiveRedisTemplate.opsForList().trim(key, -historyProperties.getWindowSize(), -1))
+                .then(reactiveRedisTemplate.expire(key, ttl()))
+                .then()
+                .onErrorResume(e -> {
+                    // 追加失败时删除缓存，避免后续读取到缺少消息的窗口
+                    log.warn("Failed to append message to chat history cache for session {}", message.getSessionId(), e);
+                    return reactiveRedisTemplate.delete(key, summaryKey(message.getSessionId(), message.getUserId()))
+                            .then()
+                            .onErrorResume(error -> Mono.empty());
+                });
+    }
+
+    /**
+     * 获取会话最新的摘要
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     * @return 摘要消息，会话尚未生成摘要时为空
+     */
+    public Mono<ChatMessage> getSummary(String sessionId, Long userId) {
+        String key = summaryKey(sessionId, userId);
+        return reactiveRedisTemplate.opsForValue().get(key)
+                .filter(ChatMessage.class::isInstance)
+                .map(cached -> {
+                    ChatMessage summary = (ChatMessage) cached;
+                    return summary.getContent() == null ? Optional.<ChatMessage>empty() : Optional.of(summary);
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to read chat summary cache for session {}, falling back to database", sessionId, e);
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> loadSummary(key, sessionId, userId)))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    // 没有摘要的会话缓存一个空占位
+    private Mono<Optional<ChatMessage>> loadSummary(String key, String sessionId, Long userId) {
+        return Mono.fromCallable(() -> Optional.ofNullable(chatMessageMapper.findLatestSummary(sessionId, userId)))
+                .subscribeOn(jdbcScheduler)
+                .flatMap(summary -> reactiveRedisTemplate.opsForValue()
+                        .set(key, summary.orElseGet(ChatMessage::new), ttl())
+                        .onErrorResume(e -> {
+                            log.warn("Failed to fill chat summary cache for session {}", sessionId, e);
+                            return Mono.just(false);
+                        })
+                        .thenReturn(summary));
+    }
+
+    /**
+     * 缓存新生成的摘要
+     *
+     * @param summary 已保存的摘要消息
+     */
+    public void putSummary(ChatMessage summary) {
+        try {
+            redisTemplate.opsForValue().set(summaryKey(summary.getSessionId(), summary.getUserId()), summary, ttl());
+        } catch (Exception e) {
+            log.warn("Failed to cache chat summary for session {}", summary.getSessionId(), e);
+            evict(summary.getSessionId(), summary.getUserId());
+        }
+    }
+
+    /**
+     * 删除会话的历史和摘要缓存
+     */
+    public void evict(String sessionId, Long userId) {
+        try {
+            redisTemplate.delete(List.of(historyKey(sessionId, userId), summaryKey(sessionId, userId)));
+        } catch (Exception e) {
+            log.warn("Failed to evict chat history cache for session {}", sessionId, e);
+        }
+    }
+
+    // 没有消息时写入占位，标记会话已加载；窗口写满后裁剪时占位会被移出
+    private Mono<Void> fill(String key, List<ChatMessage> history) {
+        List<Object> entries = history.isEmpty() ? List.of(new ChatMessage()) : new ArrayList<>(history);
+        return reactiveRedisTemplate.execute(FILL_IF_ABSENT, List.of(key), entries)
+                .then(reactiveRedisTemplate.expire(key, ttl()))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("Failed to fill chat history cache for key {}", key, e);
+                    return Mono.empty();
+                });
+    }
+
+    private List<ChatMessage> withoutPlaceholder(List<ChatMessage> cached) {
+        return cached.stream().filter(message -> message.getRole() != null).toList();
+    }
+
+    private Duration ttl() {
+        return Duration.ofMinutes(historyProperties.getCacheTtlMinutes());
+    }
+
+    private String historyKey(String sessionId, Long userId) {
+        return HISTORY_KEY + userId + ":" + sessionId;
+    }
+
+    private String summaryKey(String sessionId, Long userId) {
+        return SUMMARY_KEY + userId + ":" + sessionId;
+    }
+}
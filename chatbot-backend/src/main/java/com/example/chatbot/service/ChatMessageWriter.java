@@ -0,0 +1,185 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.ChatMessage;
+import com.example.chatbot.mapper.ChatMessageMapper;
+import com.example.chatbot.properties.WriteBehindProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 聊天消息批量写入队列
+ *
+ * 请求线程只把消息放入有界队列，由后台线程合并多个请求的消息，按数量或时间触发以多行INSERT批量写入数据库。
+ * 消息的创建时间在入队时确定，保证批量写入后的排序与实际发言顺序一致。
+ * 与知识库缓存不同，消息不能丢失：队列已满时等待一段时间，仍然放不进去则由请求线程直接写入；
+ * 批量写入失败时逐条重试；应用关闭时写完队列中剩余的全部消息。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatMessageWriter {
+    private final ChatMessageMapper chatMessageMapper;
+    private final WriteBehindProperties writeBehindProperties;
+    private final MeterRegistry meterRegistry;
+    private final Scheduler jdbcScheduler;
+
+    private BlockingQueue<ChatMessage> queue;
+    private ScheduledExecutorService flusher;
+    private Timer flushTimer;
+    private Counter failedCounter;
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, config().getCapacity()));
+        Gauge.builder("chatbot.chat.message.queue.depth", queue, BlockingQueue::size)
+                .description("Chat messages waiting to be written to the database")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("chatbot.chat.message.flush")
+                .description("Time taken to write a batch of chat messages")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("chatbot.chat.message.failed")
+                .description("Chat messages that could not be written to the database")
+                .register(meterRegistry);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-message-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config().getFlushIntervalMilliseconds();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        // 关闭前写入队列中剩余的全部消息
+        flushQuietly();
+    }
+
+    /**
+     * 将消息放入写入队列
+     *
+     * @param message 待保存的消息
+     */
+    public void enqueue(ChatMessage message) {
+        stampCreatedAt(message);
+        boolean queued;
+        try {
+            queued = !flusher.isShutdown()
+                    && queue.offer(message, config().getOfferTimeoutMilliseconds(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            // 队列已满或正在关闭时直接写入，以请求延迟换取消息不丢失
+            log.warn("Chat message queue is full, writing message for session {} synchronously", message.getSessionId());
+            insertOne(message);
+            return;
+        }
+        triggerFlushIfFull();
+    }
+
+    /**
+     * 不阻塞调用线程地将消息放入写入队列，供响应式链路使用；
+     * 队列已满时在JDBC线程池中按enqueue的方式等待或直接写入
+     *
+     * @param message 待保存的消息，创建时间在调用时确定
+     */
+    public Mono<Void> enqueueAsync(ChatMessage message) {
+        stampCreatedAt(message);
+        if (!flusher.isShutdown() && queue.offer(message)) {
+            triggerFlushIfFull();
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> enqueue(message)).subscribeOn(jdbcScheduler).then();
+    }
+
+    private void stampCreatedAt(ChatMessage message) {
+        if (message.getCreatedAt() == null) {
+            // 与数据库时间精度一致，缓存中的消息和数据库中的消息可以直接比较创建时间
+            message.setCreatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        }
+    }
+
+    private void triggerFlushIfFull() {
+        if (queue.size() >= config().getBatchSize() && !flusher.isShutdown()) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 将队列中的全部消息按批次写入数据库
+     */
+    public void flush() {
+        // 写入数据库期间持有锁，使用ReentrantLock而不是synchronized，虚拟线程等待数据库时不会固定载体线程
+        flushLock.lock();
+        try {
+            int batchSize = Math.max(1, config().getBatchSize());
+            List<ChatMessage> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writeBatch(List<ChatMessage> batch) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            chatMessageMapper.insertBatch(batch);
+        } catch (Exception e) {
+            // 批量写入失败时逐条重试，避免一条异常数据导致整批消息丢失
+            log.warn("Failed to write {} chat messages in batch, retrying one by one", batch.size(), e);
+            batch.forEach(this::insertOne);
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    private void insertOne(ChatMessage message) {
+        try {
+            chatMessageMapper.insert(message);
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("Failed to save {} message for session {}", message.getRole(), message.getSessionId(), e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush chat messages to the database", e);
+        }
+    }
+
+    private WriteBehindProperties.QueueConfig config() {
+        return writeBehindProperties.getChatMessage();
+    }
+}
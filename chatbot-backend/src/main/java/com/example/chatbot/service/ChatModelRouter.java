@@ -0,0 +1,278 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.AiConfig;
+import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.properties.RoutingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 多节点模型路由
+ *
+ * 模型配置了多个Ollama节点时，每个节点使用独立的ChatClient，并记录进行中的请求数和首个输出延迟的滑动平均。
+ * 每个请求分配给可用节点中负载最低的一个：进行中的请求越多、最近的首个输出延迟越高，负载越高。
+ * 带会话标识的请求按会话固定到同一个节点（对会话和节点地址做最高随机权重哈希），节点上保留的
+ * 上一轮提示词前缀可以直接复用；该节点冷却中时按负载选择其他节点，节点增减只影响落在该节点上的会话。
+ * 请求失败的节点在冷却时间内不再分配请求；未收到任何输出就失败的请求会换一个节点重试。
+ * 没有配置节点的模型使用默认的ChatClient。
+ */
+@Slf4j
+@Service
+public class ChatModelRouter {
+    private final ChatClient defaultChatClient;
+    private final ModelProperties modelProperties;
+    private final RoutingProperties routingProperties;
+    private final Map<String, List<Endpoint>> endpointsByModel = new ConcurrentHashMap<>();
+
+    public ChatModelRouter(ChatClient chatClient, ModelProperties modelProperties, RoutingProperties routingProperties) {
+        this.defaultChatClient = chatClient;
+        this.modelProperties = modelProperties;
+        this.routingProperties = routingProperties;
+    }
+
+    /**
+     * 在负载最低的节点上发起流式请求
+     *
+     * @param modelId 模型ID
+     * @param request 使用给定ChatClient发起请求的函数
+     * @return 模型输出的文本片段
+     */
+    public Flux<String> stream(String modelId, Function<ChatClient, Flux<String>> request) {
+        return stream(modelId, null, request);
+    }
+
+    /**
+     * 在会话固定的节点上发起流式请求，该节点不可用时选择负载最低的节点
+     *
+     * @param modelId    模型ID
+     * @param sessionKey 会话标识，为null时按负载选择节点
+     * @param request    使用给定ChatClient发起请求的函数
+     * @return 模型输出的文本片段
+     */
+    public Flux<String> stream(String modelId, String sessionKey, Function<ChatClient, Flux<String>> request) {
+        List<Endpoint> endpoints = endpointsFor(modelId);
+        if (endpoints.isEmpty()) {
+            return request.apply(defaultChatClient);
+        }
+        return stream(endpoints, sessionKey, request, Collections.synchronizedSet(new HashSet<>()));
+    }
+
+    /**
+     * 在负载最低的节点上发起同步请求
+     *
+     * @param modelId 模型ID
+     * @param request 使用给定ChatClient发起请求的函数
+     * @return 请求结果
+     */
+    public <T> T call(String modelId, Function<ChatClient, T> request) {
+        return call(modelId, null, request);
+    }
+
+    /**
+     * 在会话固定的节点上发起同步请求，该节点不可用时选择负载最低的节点
+     *
+     * @param modelId    模型ID
+     * @param sessionKey 会话标识，为null时按负载选择节点
+     * @param request    使用给定ChatClient发起请求的函数
+     * @return 请求结果
+     */
+    public <T> T call(String modelId, String sessionKey, Function<ChatClient, T> request) {
+        List<Endpoint> endpoints = endpointsFor(modelId);
+        if (endpoints.isEmpty()) {
+            return request.apply(defaultChatClient);
+        }
+        Set<Endpoint> tried = new HashSet<>();
+        while (true) {
+            Endpoint endpoint = select(endpoints, sessionKey, tried);
+            tried.add(endpoint);
+            endpoint.start();
+            try {
+                T result = request.apply(endpoint.chatClient);
+                endpoint.recordSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                endpoint.recordFailure();
+                if (!canRetry(endpoints, tried)) {
+                    throw e;
+                }
+                log.warn("Request to {} failed, retrying on another endpoint: {}", endpoint.baseUrl, e.getMessage());
+            } finally {
+                endpoint.finish();
+            }
+        }
+    }
+
+    private Flux<String> stream(List<Endpoint> endpoints, String sessionKey, Function<ChatClient, Flux<String>> request,
+                                Set<Endpoint> tried) {
+        return Flux.defer(() -> {
+            Endpoint endpoint = select(endpoints, sessionKey, tried);
+            tried.add(endpoint);
+            endpoint.start();
+            long start = System.nanoTime();
+            AtomicBoolean received = new AtomicBoolean();
+            return request.apply(endpoint.chatClient)
+                    .doOnNext(chunk -> {
+                        if (received.compareAndSet(false, true)) {
+                            endpoint.recordFirstToken(System.nanoTime() - start);
+                        }
+                    })
+                    .doOnError(error -> endpoint.recordFailure())
+                    .doFinally(signal -> endpoint.finish())
+                    // 已经输出了部分内容时不能重试，否则用户会收到重复的内容
+                    .onErrorResume(error -> !received.get() && canRetry(endpoints, tried), error -> {
+                        log.warn("Stream from {} failed before the first token, retrying on another endpoint: {}",
+                                endpoint.baseUrl, error.getMessage());
+                        return stream(endpoints, sessionKey, request, tried);
+                    });
+        });
+    }
+
+    private boolean canRetry(List<Endpoint> endpoints, Set<Endpoint> tried) {
+        return tried.size() < Math.min(routingProperties.getMaxAttempts(), endpoints.size());
+    }
+
+    // 会话固定的节点未尝试过且可用时选择该节点；否则选择未尝试过的可用节点中负载最低的；都不可用时选择最早结束冷却的节点
+    private Endpoint select(List<Endpoint> endpoints, String sessionKey, Set<Endpoint> tried) {
+        long now = System.currentTimeMillis();
+        if (sessionKey != null && routingProperties.isSessionAffinity()) {
+            Endpoint sticky = stickyEndpoint(endpoints, sessionKey);
+            if (!tried.contains(sticky) && sticky.isAvailable(now)) {
+                return sticky;
+            }
+        }
+        Endpoint best = null;
+        Endpoint fallback = null;
+        for (Endpoint endpoint : endpoints) {
+            if (tried.contains(endpoint)) {
+                continue;
+            }
+            if (endpoint.isAvailable(now)) {
+                if (best == null || endpoint.load() < best.load()) {
+                    best = endpoint;
+                }
+            } else if (fallback == null || endpoint.cooldownUntil < fallback.cooldownUntil) {
+                fallback = endpoint;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        return fallback != null ? fallback : endpoints.get(0);
+    }
+
+    // 最高随机权重哈希：每个节点对会话计算一个权重，权重最高的节点固定处理该会话
+    private Endpoint stickyEndpoint(List<Endpoint> endpoints, String sessionKey) {
+        Endpoint sticky = endpoints.get(0);
+        long bestWeight = Long.MIN_VALUE;
+        for (Endpoint endpoint : endpoints) {
+            long weight = mix(sessionKey.hashCode() * 0x9E3779B97F4A7C15L + endpoint.baseUrl.hashCode());
+            if (weight > bestWeight) {
+                bestWeight = weight;
+                sticky = endpoint;
+            }
+        }
+        return sticky;
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private List<Endpoint> endpointsFor(String modelId) {
+        return endpointsByModel.computeIfAbsent(modelId, id -> {
+            ModelProperties.ModelOption option = modelProperties.getOptions().get(id);
+            if (option == null || option.getEndpoints() == null) {
+                return List.of();
+            }
+            return option.getEndpoints().stream()
+                    .map(baseUrl -> new Endpoint(baseUrl, createChatClient(baseUrl, option.getModel())))
+                    .toList();
+        });
+    }
+
+    private ChatClient createChatClient(String baseUrl, String model) {
+        OllamaChatModel chatModel = OllamaChatModel.builder()
+                .ollamaApi(OllamaApi.builder().baseUrl(baseUrl).build())
+                .defaultOptions(OllamaOptions.builder().model(model).build())
+                .build();
+        return AiConfig.buildChatClient(chatModel);
+    }
+
+    /**
+     * 获取模型各节点的当前状态，用于监控和测试
+     */
+    public List<EndpointStatus> status(String modelId) {
+        long now = System.currentTimeMillis();
+        return endpointsFor(modelId).stream()
+                .map(e -> new EndpointStatus(e.baseUrl, e.inFlight.get(), e.ttftMillis, e.isAvailable(now)))
+                .toList();
+    }
+
+    public record EndpointStatus(String baseUrl, int inFlight, double ttftMillis, boolean available) {
+    }
+
+    private class Endpoint {
+        private final String baseUrl;
+        private final ChatClient chatClient;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double ttftMillis;
+        private volatile long cooldownUntil;
+
+        Endpoint(String baseUrl, ChatClient chatClient) {
+            this.baseUrl = baseUrl;
+            this.chatClient = chatClient;
+        }
+
+        boolean isAvailable(long now) {
+            return cooldownUntil <= now;
+        }
+
+        // 进行中的请求数（含本次）乘以首个输出延迟，还没有延迟数据时只看请求数
+        double load() {
+            return (inFlight.get() + 1) * Math.max(ttftMillis, 1);
+        }
+
+        void start() {
+            inFlight.incrementAndGet();
+        }
+
+        void finish() {
+            inFlight.decrementAndGet();
+        }
+
+        void recordFirstToken(long nanos) {
+            double millis = TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0;
+            double smoothing = routingProperties.getTtftSmoothing();
+            ttftMillis = ttftMillis == 0 ? millis : ttftMillis * (1 - smoothing) + millis * smoothing;
+            cooldownUntil = 0;
+        }
+
+        void recordSuccess() {
+            cooldownUntil = 0;
+        }
+
+        void recordFailure() {
+            cooldownUntil = System.currentTimeMillis()
+                    + TimeUnit.SECONDS.toMillis(routingProperties.getFailureCooldownSeconds());
+            log.warn("Endpoint {} taken out of rotation for {}s", baseUrl, routingProperties.getFailureCooldownSeconds());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.properties.CoalescingProperties;
+import com.example.chatbot.util.KnowledgeFingerprint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 相同并发提问的合并
+ *
+ * 同一模型、归一化后相同的问题、检索到相同知识库文档的第一轮提问共用一次模型调用：
+ * 第一个请求发起生成，之后到达的请求订阅同一个输出流，并从头重放已生成的片段。
+ * 所有订阅者都取消后模型调用随之取消；生成结束后移除该键，之后的提问重新生成。
+ * 只合并模型输出，每个请求仍各自过滤思考过程并保存自己会话的消息。
+ */
+@Slf4j
+@Service
+public class ChatRequestCoalescer {
+    private final CoalescingProperties coalescingProperties;
+    private final Map<String, Flux<String>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+
+    public ChatRequestCoalescer(CoalescingProperties coalescingProperties, MeterRegistry meterRegistry) {
+        this.coalescingProperties = coalescingProperties;
+        this.coalescedCounter = Counter.builder("chatbot.chat.coalesced")
+                .description("Chat requests served by another request's in-flight generation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 计算合并键
+     *
+     * @param modelId  模型ID
+     * @param question 清理后的用户问题
+     * @param docs     本次检索到的知识库文档
+     * @return 合并键，未启用合并时返回null
+     */
+    public String key(String modelId, String question, List<KnowledgeBase> docs) {
+        if (!coalescingProperties.isEnabled()) {
+            return null;
+        }
+        return modelId + ":" + normalize(question) + ":" + KnowledgeFingerprint.of(docs);
+    }
+
+    /**
+     * 获取合并后的模型输出流
+     *
+     * @param key        合并键
+     * @param generation 发起模型调用的函数，只有没有进行中的相同请求时才会调用
+     * @return 模型输出的文本片段
+     */
+    public Flux<String> coalesce(String key, Supplier<Flux<String>> generation) {
+        return Flux.defer(() -> {
+            AtomicReference<Flux<String>> created = new AtomicReference<>();
+            Flux<String> shared = inFlight.computeIfAbsent(key, k -> {
+                Flux<String> flux = generation.get()
+                        .doFinally(signal -> inFlight.remove(k, created.get()))
+                        .replay()
+                        .refCount();
+                created.set(flux);
+                return flux;
+            });
+            if (created.get() == null) {
+                coalescedCounter.increment();
+                log.debug("Joining in-flight generation for key {}", key);
+            }
+            return shared;
+        });
+    }
+
+    // 忽略大小写、空白和标点的差异
+    private String normalize(String question) {
+        StringBuilder builder = new StringBuilder(question.length());
+        question.toLowerCase(Locale.ROOT).codePoints()
+                .filter(Character::isLetterOrDigit)
+                .forEach(builder::appendCodePoint);
+        return builder.toString();
+    }
+}
@@ -9,6 +9,7 @@ import java.util.List;
 public interface ChatService {
     ChatResponse processMessage(ChatRequest request);
     Flux<ChatResponse> processMessageReactive(ChatRequest request);
+    Flux<ChatResponse> resumeMessageReactive(String messageId, long lastSequence);
     List<ChatResponse> getHistory(String sessionId);
     List<String> getAllSessions();
     void deleteSession(String sessionId);
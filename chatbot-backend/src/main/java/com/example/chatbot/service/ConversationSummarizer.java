@@ -0,0 +1,131 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.ChatMessage;
+import com.example.chatbot.exception.ModelBusyException;
+import com.example.chatbot.mapper.ChatMessageMapper;
+import com.example.chatbot.properties.ChatHistoryProperties;
+import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.util.ThinkBlockFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话滚动摘要
+ *
+ * 会话在上一次摘要之后的消息超过阈值时，在异步线程池中把较早的消息连同上一次摘要压缩为一条新的摘要，
+ * 以role为summary的消息保存，创建时间取最后一条被压缩消息的时间。
+ * 构建上下文时只发送摘要和摘要之后的消息，历史长度不再随会话增长。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConversationSummarizer {
+    private final ChatModelRouter chatModelRouter;
+    private final ChatMessageMapper chatMessageMapper;
+    private final ChatMessageWriter chatMessageWriter;
+    private final ChatHistoryCache chatHistoryCache;
+    private final RedisDistributedLock distributedLock;
+    private final ChatHistoryProperties historyProperties;
+    private final ModelProperties modelProperties;
+    private final ModelBulkhead modelBulkhead;
+
+    public static final String SUMMARY_ROLE = "summary";
+    private static final String SUMMARY_LOCK_KEY = "chat:summary:lock:";
+    private static final String SUMMARY_PROMPT = """
+            你是对话摘要助手。请将下面的对话压缩为一段摘要，保留用户的身份信息、提出的问题、关键事实、已得出的结论和尚未解决的问题。
+            如果提供了之前的摘要，请将其内容合并到新摘要中。摘要不超过%d字，直接输出摘要内容，不要输出思考过程。
+            """;
+
+    /**
+     * 会话消息过多时生成新的摘要，在异步线程池中执行，不阻塞聊天请求
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     */
+    @Async("taskExecutor")
+    public void summarizeIfNeeded(String sessionId, Long userId) {
+        // 同一会话同时只允许一个摘要任务
+        String lockKey = SUMMARY_LOCK_KEY + sessionId;
+        String lockValue = distributedLock.tryLock(lockKey, 60, TimeUnit.SECONDS);
+        if (lockValue == null) {
+            return;
+        }
+        try {
+            // 先写入队列中尚未落库的消息
+            chatMessageWriter.flush();
+            ChatMessage previous = chatMessageMapper.findLatestSummary(sessionId, userId);
+            List<ChatMessage> messages = chatMessageMapper.findMessagesAfter(sessionId, userId,
+                    previous != null ? previous.getCreatedAt() : null);
+            if (messages.size() < historyProperties.getSummaryThreshold()) {
+                return;
+            }
+            List<ChatMessage> older = messages.subList(0, messages.size() - historyProperties.getKeepRecentMessages());
+            if (older.isEmpty()) {
+                return;
+            }
+
+            String content = summarize(previous, older, userId);
+            if (content.isEmpty()) {
+                log.warn("Empty summary generated for session {}", sessionId);
+                return;
+            }
+            ChatMessage summary = new ChatMessage();
+            summary.setContent(content);
+            summary.setRole(SUMMARY_ROLE);
+            summary.setSessionId(sessionId);
+            summary.setUserId(userId);
+            summary.setCreatedAt(older.get(older.size() - 1).getCreatedAt());
+            chatMessageMapper.insert(summary);
+            if (previous != null) {
+                chatMessageMapper.deleteById(previous.getId());
+            }
+            chatHistoryCache.putSummary(summary);
+            log.debug("Summarized {} messages for session {}", older.size(), sessionId);
+        } catch (ModelBusyException e) {
+            log.debug("Model busy, skipping summary for session {}", sessionId);
+        } catch (Exception e) {
+            log.warn("Failed to summarize session {}", sessionId, e);
+        } finally {
+            distributedLock.unlock(lockKey, lockValue);
+        }
+    }
+
+    private String summarize(ChatMessage previous, List<ChatMessage> messages, Long userId) {
+        StringBuilder conversation = new StringBuilder();
+        if (previous != null) {
+            conversation.append("之前的摘要：\n").append(previous.getContent()).append("\n\n");
+        }
+        conversation.append("对话内容：\n");
+        for (ChatMessage message : messages) {
+            conversation.append("user".equals(message.getRole()) ? "用户：" : "助手：")
+                    .append(message.getContent()).append('\n');
+        }
+
+        ModelProperties.ModelOption modelOption = modelProperties.getOptions().get(historyProperties.getSummaryModelId());
+        if (modelOption == null) {
+            throw new IllegalArgumentException("Invalid summary model ID: " + historyProperties.getSummaryModelId());
+        }
+        // 与聊天请求共用模型的并发限制和节点路由，模型繁忙时放弃本次摘要，下一轮对话会再次触发
+        String modelId = historyProperties.getSummaryModelId();
+        String response = modelBulkhead.call(modelId, userId, () -> chatModelRouter.call(modelId, client -> client.prompt()
+                .system(SUMMARY_PROMPT.formatted(historyProperties.getSummaryMaxLength()))
+                .user(conversation.toString())
+                .options(ChatOptions.builder()
+                        .model(modelOption.getModel())
+                        .temperature(0.2)
+                        .build())
+                .call()
+                .content()));
+
+        ThinkBlockFilter thinkFilter = new ThinkBlockFilter();
+        thinkFilter.accept(response);
+        thinkFilter.finish();
+        return thinkFilter.getText();
+    }
+}
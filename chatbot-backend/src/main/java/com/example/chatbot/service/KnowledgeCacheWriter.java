@@ -0,0 +1,182 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.properties.WriteBehindProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 知识库缓存异步写回队列
+ *
+ * 聊天请求只把检索到的文档放入有界队列，由后台线程按文档ID合并后，
+ * 以管道方式批量写入Redis，请求线程不再等待缓存维护。
+ * 缓存只是加速手段，队列已满时新的更新会被丢弃，丢弃的数量计入chatbot.knowledge.cache.dropped，
+ * 被丢弃的文档在下次检索命中时重新入队。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KnowledgeCacheWriter {
+    private final RedisService redisService;
+    private final RedisDistributedLock distributedLock;
+    private final WriteBehindProperties writeBehindProperties;
+    private final MeterRegistry meterRegistry;
+
+    private static final String BATCH_LOCK_KEY = "knowledge:save:batch";
+
+    private final Object monitor = new Object();
+    private Map<Long, PendingUpdate> pending = new LinkedHashMap<>();
+    private ScheduledExecutorService flusher;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void start() {
+        droppedCounter = Counter.builder("chatbot.knowledge.cache.dropped")
+                .description("Knowledge cache updates dropped because the write-behind queue was full")
+                .register(meterRegistry);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "knowledge-cache-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config().getFlushIntervalMilliseconds();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        // 关闭前写入剩余的更新
+        flushQuietly();
+    }
+
+    /**
+     * 将文档放入写回队列，同一文档的多次更新会被合并为一次写入
+     *
+     * @param docs 本次检索命中的知识库文档
+     */
+    public void enqueue(Collection<KnowledgeBase> docs) {
+        if (docs.isEmpty()) {
+            return;
+        }
+        boolean batchReady;
+        int dropped = 0;
+        synchronized (monitor) {
+            for (KnowledgeBase doc : docs) {
+                PendingUpdate update = pending.get(doc.getId());
+                if (update != null) {
+                    update.merge(doc, 1);
+                } else if (pending.size() < config().getCapacity()) {
+                    pending.put(doc.getId(), new PendingUpdate(doc, 1));
+                } else {
+                    dropped++;
+                }
+            }
+            batchReady = pending.size() >= config().getBatchSize();
+        }
+        if (dropped > 0) {
+            droppedCounter.increment(dropped);
+            log.warn("Knowledge cache write-behind queue is full, dropped {} of {} updates", dropped, docs.size());
+        }
+        if (batchReady && !flusher.isShutdown()) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 将队列中的全部更新按批次写入Redis
+     */
+    public void flush() {
+        Map<Long, PendingUpdate> batch;
+        synchronized (monitor) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        // 多实例部署时同一时间只允许一个实例写入，获取锁失败则留到下次写入
+        String lockValue = distributedLock.tryLock(BATCH_LOCK_KEY, 5, TimeUnit.SECONDS);
+        if (lockValue == null) {
+            requeue(batch);
+            return;
+        }
+        try {
+            List<PendingUpdate> updates = new ArrayList<>(batch.values());
+            int batchSize = Math.max(1, config().getBatchSize());
+            for (int i = 0; i < updates.size(); i += batchSize) {
+                List<PendingUpdate> chunk = updates.subList(i, Math.min(i + batchSize, updates.size()));
+                List<KnowledgeBase> docs = new ArrayList<>(chunk.size());
+                Map<Long, Integer> hits = new HashMap<>();
+                for (PendingUpdate update : chunk) {
+                    docs.add(update.knowledge);
+                    hits.put(update.knowledge.getId(), update.hits);
+                }
+                redisService.saveDocsToRedis(docs, hits);
+            }
+        } finally {
+            distributedLock.unlock(BATCH_LOCK_KEY, lockValue);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush knowledge cache updates to Redis", e);
+        }
+    }
+
+    // 将未能写入的批次放回队列，与期间新入队的更新合并，保留较新的文档内容
+    private void requeue(Map<Long, PendingUpdate> batch) {
+        synchronized (monitor) {
+            Map<Long, PendingUpdate> merged = new LinkedHashMap<>(batch);
+            for (PendingUpdate newer : pending.values()) {
+                PendingUpdate older = merged.get(newer.knowledge.getId());
+                if (older != null) {
+                    older.merge(newer.knowledge, newer.hits);
+                } else {
+                    merged.put(newer.knowledge.getId(), newer);
+                }
+            }
+            pending = merged;
+        }
+    }
+
+    private WriteBehindProperties.QueueConfig config() {
+        return writeBehindProperties.getKnowledgeCache();
+    }
+
+    // 同一文档的待写入更新：最新的文档内容和累计访问次数
+    private static class PendingUpdate {
+        private KnowledgeBase knowledge;
+        private int hits;
+
+        PendingUpdate(KnowledgeBase knowledge, int hits) {
+            this.knowledge = knowledge;
+            this.hits = hits;
+        }
+
+        void merge(KnowledgeBase newer, int newerHits) {
+            this.knowledge = newer;
+            this.hits += newerHits;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.dto.PageResponse;
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.properties.RetrievalProperties;
+import com.example.chatbot.util.ReciprocalRankFusion;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 知识库检索
+ *
+ * 同时发起Redis、向量、数据库三路检索，每一路在时间预算内返回的结果都参与倒数排名融合，
+ * 超出预算的数据源被取消，失败的数据源按空结果处理，总耗时不超过时间预算。
+ * 各路结果按Redis、向量、数据库的固定顺序加入融合，得分相同时的先后与返回的时间无关。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KnowledgeRetriever {
+    private final RedisService redisService;
+    private final KnowledgeService knowledgeService;
+    private final KnowledgeCacheWriter knowledgeCacheWriter;
+    private final RetrievalProperties retrievalProperties;
+
+    /**
+     * 检索与问题相关的知识库文档
+     *
+     * @param cleanedMessage 清理后的用户问题，用于向量检索
+     * @param keywords       问题的关键词，用于Redis和数据库检索
+     * @return 融合得分最高的topK个文档
+     */
+    public Mono<List<KnowledgeBase>> search(String cleanedMessage, List<String> keywords) {
+        return Mono.defer(() -> {
+            Duration budget = Duration.ofMillis(retrievalProperties.getTimeoutMilliseconds());
+            int topK = retrievalProperties.getTopK();
+            ReciprocalRankFusion fusion = new ReciprocalRankFusion(retrievalProperties.getRrfK());
+
+            return Flux.mergeSequential(
+                            withinBudget("Redis", redisService.searchKnowledgeReactive(keywords), budget),
+                            withinBudget("Vector", knowledgeService.searchSimilarReactive(cleanedMessage, topK), budget),
+                            withinBudget("Keyword", searchDatabase(keywords), budget))
+                    .doOnNext(ranking -> fusion.add(ranking.source(), ranking.docs()))
+                    .then(Mono.fromSupplier(() -> {
+                        // 只有融合得分最高的topK个文档放入提示词
+                        List<ReciprocalRankFusion.Candidate> ranked = fusion.ranked(topK);
+                        if (log.isDebugEnabled()) {
+                            ranked.forEach(candidate -> log.debug("Retrieved doc {} from {} rrf={} similarity={}",
+                                    candidate.getDoc().getId(), candidate.getSources(),
+                                    String.format("%.4f", candidate.getFusedScore()), candidate.getSimilarity()));
+                        }
+                        List<KnowledgeBase> relevantDocs = new ArrayList<>(ranked.size());
+                        ranked.forEach(candidate -> relevantDocs.add(candidate.getDoc()));
+                        // 更新Redis缓存，交给后台写回队列合并后批量写入，不阻塞当前请求
+                        knowledgeCacheWriter.enqueue(relevantDocs);
+                        return relevantDocs;
+                    }));
+        });
+    }
+
+    // 超出时间预算的检索被取消，失败或超时的数据源返回空结果
+    private Mono<SourceRanking> withinBudget(String source, Mono<List<KnowledgeBase>> search, Duration budget) {
+        return search
+                .timeout(budget)
+                .onErrorResume(TimeoutException.class, e -> {
+                    log.warn("{} search exceeded the {} ms retrieval budget and was cancelled", source, budget.toMillis());
+                    return Mono.just(Collections.emptyList());
+                })
+                .onErrorResume(e -> {
+                    log.warn("{} search failed, continuing with the other sources", source, e);
+                    return Mono.just(Collections.emptyList());
+                })
+                .defaultIfEmpty(Collections.emptyList())
+                .map(docs -> new SourceRanking(source, docs));
+    }
+
+    private Mono<List<KnowledgeBase>> searchDatabase(List<String> keywords) {
+        if (keywords == null || keywords.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+        return knowledgeService.searchReactive(String.join(" ", keywords), 0, 10).map(PageResponse::getContent);
+    }
+
+    // 一路检索的结果，按相关度从高到低排列
+    private record SourceRanking(String source, List<KnowledgeBase> docs) {}
+}
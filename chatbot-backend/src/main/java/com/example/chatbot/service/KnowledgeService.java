@@ -4,13 +4,18 @@ import com.example.chatbot.dto.PageResponse;
 import com.example.chatbot.entity.KnowledgeBase;
 import com.example.chatbot.client.KnowledgeClient;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class KnowledgeService {
     private final KnowledgeClient knowledgeClient;
+    private final WebClient knowledgeWebClient;
 
     public PageResponse<KnowledgeBase> findAll(int page, int size) {
         return knowledgeClient.findAll(page, size).getBody();
@@ -24,6 +29,28 @@ public class KnowledgeService {
         return knowledgeClient.searchSimilar(query, topK).getBody();
     }
 
+    // 聊天流式链路使用的非阻塞版本，与Feign接口对应同一个knowledge-service接口
+    public Mono<PageResponse<KnowledgeBase>> searchReactive(String keyword, int page, int size) {
+        return knowledgeWebClient.get()
+                .uri(uri -> uri.path("/api/knowledge/search")
+                        .queryParam("keyword", keyword)
+                        .queryParam("page", page)
+                        .queryParam("size", size)
+                        .build())
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<PageResponse<KnowledgeBase>>() {});
+    }
+
+    public Mono<List<KnowledgeBase>> searchSimilarReactive(String query, int topK) {
+        return knowledgeWebClient.get()
+                .uri(uri -> uri.path("/api/knowledge/similar")
+                        .queryParam("query", query)
+                        .queryParam("topK", topK)
+                        .build())
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<KnowledgeBase>>() {});
+    }
+
     public PageResponse<KnowledgeBase> findByCategory(String category, int page, int size) {
         return knowledgeClient.findByCategory(category, page, size).getBody();
     }
@@ -0,0 +1,269 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.exception.ModelBusyException;
+import com.example.chatbot.properties.ModelProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 按模型隔离的并发限制
+ *
+ * 每个模型配置同时进行的最大生成请求数，并发已满的请求进入有界的先进先出等待队列，
+ * 单个用户在队列中的请求数有上限，避免一个用户占满队列。队列已满或等待超时的请求立即以ModelBusyException拒绝，
+ * 由全局异常处理返回429和Retry-After。排队不占用线程：流式请求在许可发放后才订阅模型输出。
+ * 没有配置maxConcurrency的模型不做限制。
+ */
+@Slf4j
+@Service
+public class ModelBulkhead {
+    private static final long DEFAULT_QUEUE_TIMEOUT_MILLISECONDS = 30_000;
+    private static final int DEFAULT_RETRY_AFTER_SECONDS = 5;
+
+    private final ModelProperties modelProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public ModelBulkhead(ModelProperties modelProperties, MeterRegistry meterRegistry) {
+        this.modelProperties = modelProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 获得许可后发起同步请求，排队时阻塞当前线程
+     *
+     * @param modelId 模型ID
+     * @param userId  发起请求的用户ID
+     * @param request 模型请求
+     * @throws ModelBusyException 队列已满或等待超时
+     */
+    public <T> T call(String modelId, Long userId, Supplier<T> request) {
+        Bulkhead bulkhead = bulkheadFor(modelId);
+        if (bulkhead == null) {
+            return request.get();
+        }
+        Permit permit;
+        try {
+            permit = bulkhead.acquire(userId).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        try {
+            return request.get();
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * 获得许可后订阅模型的流式输出，输出结束、出错或被取消时归还许可
+     *
+     * @param modelId 模型ID
+     * @param userId  发起请求的用户ID
+     * @param request 模型请求，获得许可后才会调用
+     * @return 模型输出，被拒绝时以ModelBusyException结束
+     */
+    public Flux<String> stream(String modelId, Long userId, Supplier<Flux<String>> request) {
+        return Flux.defer(() -> {
+            Bulkhead bulkhead = bulkheadFor(modelId);
+            if (bulkhead == null) {
+                return request.get();
+            }
+            return Flux.usingWhen(acquire(bulkhead, userId),
+                    permit -> request.get(),
+                    permit -> Mono.fromRunnable(permit::release));
+        });
+    }
+
+    // 等待中被取消时撤回排队；许可已发放但下游已取消时由丢弃回调归还
+    private Mono<Permit> acquire(Bulkhead bulkhead, Long userId) {
+        return Mono.<Permit>create(sink -> {
+            CompletableFuture<Permit> future = bulkhead.acquire(userId);
+            sink.onCancel(() -> future.cancel(false));
+            future.whenComplete((permit, error) -> {
+                if (error != null) {
+                    sink.error(error instanceof CompletionException ? error.getCause() : error);
+                } else {
+                    sink.success(permit);
+                }
+            });
+        }).doOnDiscard(Permit.class, Permit::release);
+    }
+
+    private Bulkhead bulkheadFor(String modelId) {
+        ModelProperties.ModelOption option = modelProperties.getOptions().get(modelId);
+        if (option == null || option.getMaxConcurrency() == null || option.getMaxConcurrency() <= 0) {
+            return null;
+        }
+        return bulkheads.computeIfAbsent(modelId, id -> new Bulkhead(id, option));
+    }
+
+    /**
+     * 获取模型当前的并发和排队情况，用于监控和测试
+     */
+    public Status status(String modelId) {
+        Bulkhead bulkhead = bulkheadFor(modelId);
+        if (bulkhead == null) {
+            return new Status(0, 0);
+        }
+        return bulkhead.snapshot();
+    }
+
+    public record Status(int active, int queued) {
+    }
+
+    /**
+     * 请求占用的并发许可，只能归还一次
+     */
+    public static final class Permit {
+        private final Bulkhead bulkhead;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        }
+    }
+
+    private record Waiter(Long userId, CompletableFuture<Permit> future) {
+    }
+
+    private class Bulkhead {
+        private final String modelId;
+        private final int maxConcurrency;
+        private final int maxQueued;
+        private final int maxQueuedPerUser;
+        private final long queueTimeoutMilliseconds;
+        private final int retryAfterSeconds;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+        private final Map<Long, Integer> queuedByUser = new HashMap<>();
+        private int active;
+        private final Counter queueFullCounter;
+        private final Counter userLimitCounter;
+        private final Counter timeoutCounter;
+
+        Bulkhead(String modelId, ModelProperties.ModelOption option) {
+            this.modelId = modelId;
+            this.maxConcurrency = option.getMaxConcurrency();
+            this.maxQueued = option.getMaxQueued() != null ? option.getMaxQueued() : 0;
+            this.maxQueuedPerUser = option.getMaxQueuedPerUser() != null ? option.getMaxQueuedPerUser() : maxQueued;
+            this.queueTimeoutMilliseconds = option.getQueueTimeoutMilliseconds() != null
+                    ? option.getQueueTimeoutMilliseconds() : DEFAULT_QUEUE_TIMEOUT_MILLISECONDS;
+            this.retryAfterSeconds = option.getRetryAfterSeconds() != null
+                    ? option.getRetryAfterSeconds() : DEFAULT_RETRY_AFTER_SECONDS;
+
+            Gauge.builder("chatbot.model.bulkhead.active", this, b -> b.snapshot().active())
+                    .tag("model", modelId)
+                    .description("Generation requests currently holding a permit")
+                    .register(meterRegistry);
+            Gauge.builder("chatbot.model.bulkhead.queued", this, b -> b.snapshot().queued())
+                    .tag("model", modelId)
+                    .description("Generation requests waiting for a permit")
+                    .register(meterRegistry);
+            this.queueFullCounter = rejectedCounter("queue_full");
+            this.userLimitCounter = rejectedCounter("user_limit");
+            this.timeoutCounter = rejectedCounter("timeout");
+        }
+
+        private Counter rejectedCounter(String reason) {
+            return Counter.builder("chatbot.model.bulkhead.rejected")
+                    .tag("model", modelId)
+                    .tag("reason", reason)
+                    .description("Generation requests rejected by the model bulkhead")
+                    .register(meterRegistry);
+        }
+
+        synchronized Status snapshot() {
+            return new Status(active, waiters.size());
+        }
+
+        // 有空闲许可且无人排队时立即发放，否则在队列和用户配额允许时排队
+        synchronized CompletableFuture<Permit> acquire(Long userId) {
+            if (active < maxConcurrency && waiters.isEmpty()) {
+                active++;
+                return CompletableFuture.completedFuture(new Permit(this));
+            }
+            if (waiters.size() >= maxQueued) {
+                queueFullCounter.increment();
+                return CompletableFuture.failedFuture(busy("queue is full"));
+            }
+            int queued = queuedByUser.getOrDefault(userId, 0);
+            if (queued >= maxQueuedPerUser) {
+                userLimitCounter.increment();
+                return CompletableFuture.failedFuture(busy("too many queued requests for this user"));
+            }
+
+            Waiter waiter = new Waiter(userId, new CompletableFuture<>());
+            waiters.addLast(waiter);
+            queuedByUser.put(userId, queued + 1);
+            CompletableFuture.delayedExecutor(queueTimeoutMilliseconds, TimeUnit.MILLISECONDS).execute(() -> {
+                if (dequeue(waiter)) {
+                    timeoutCounter.increment();
+                    waiter.future().completeExceptionally(busy("timed out waiting for a free slot"));
+                }
+            });
+            waiter.future().whenComplete((permit, error) -> {
+                if (error instanceof CancellationException) {
+                    dequeue(waiter);
+                }
+            });
+            return waiter.future();
+        }
+
+        // 归还许可，依次交给排队中的请求，已取消或超时的请求跳过
+        void release() {
+            while (true) {
+                Waiter next;
+                synchronized (this) {
+                    next = waiters.pollFirst();
+                    if (next == null) {
+                        active--;
+                        return;
+                    }
+                    decrementQueued(next.userId());
+                }
+                if (next.future().complete(new Permit(this))) {
+                    return;
+                }
+            }
+        }
+
+        private synchronized boolean dequeue(Waiter waiter) {
+            if (!waiters.remove(waiter)) {
+                return false;
+            }
+            decrementQueued(waiter.userId());
+            return true;
+        }
+
+        private void decrementQueued(Long userId) {
+            queuedByUser.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null);
+        }
+
+        private ModelBusyException busy(String reason) {
+            log.debug("Rejected request for model {}: {}", modelId, reason);
+            return new ModelBusyException("模型" + modelId + "繁忙，请" + retryAfterSeconds + "秒后重试", retryAfterSeconds);
+        }
+    }
+}
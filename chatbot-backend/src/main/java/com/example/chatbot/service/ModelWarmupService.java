@@ -0,0 +1,303 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.properties.ModelWarmupProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Ollama模型预热和保活
+ *
+ * 启动时预加载所有配置的模型；之后定时查询Ollama当前加载的模型，最近有请求但已被卸载的模型会被重新加载。
+ * 常驻模型以keep_alive=-1m加载，不会因空闲被卸载，聊天请求也使用相同的keep_alive，避免覆盖常驻设置。
+ * keep_alive为字符串时Ollama按带单位的时长解析，不带单位的"-1"会被拒绝，负数时长表示一直保持加载。
+ * 模型配置了多个节点时，在每个节点上分别预热和检查。
+ * 请求到达时模型在所有节点上都未加载记为一次冷启动，冷启动请求的耗时和每次加载模型的耗时都会导出为指标：
+ * 流式请求记录首个输出延迟，同步请求拿不到首个输出的时间，单独记录整个调用的耗时。
+ * 访问Ollama的请求设置了连接和读取超时，节点无响应时不会一直占用预热和检查的线程。
+ */
+@Slf4j
+@Service
+public class ModelWarmupService {
+    private final ModelProperties modelProperties;
+    private final ModelWarmupProperties warmupProperties;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.ai.ollama.base-url}")
+    private String ollamaBaseUrl;
+
+    private static final String PINNED_KEEP_ALIVE = "-1m";
+
+    private final RestTemplate restTemplate;
+    // 最近一次查询到的已加载模型，格式为“节点地址 模型名称”
+    private volatile Set<String> loadedModels = Set.of();
+    private final Map<String, ModelUsage> usages = new ConcurrentHashMap<>();
+    private volatile String pinnedModelId;
+
+    public ModelWarmupService(ModelProperties modelProperties, ModelWarmupProperties warmupProperties,
+                              MeterRegistry meterRegistry, RestTemplateBuilder restTemplateBuilder) {
+        this.modelProperties = modelProperties;
+        this.warmupProperties = warmupProperties;
+        this.meterRegistry = meterRegistry;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(warmupProperties.getConnectTimeoutMilliseconds()))
+                .setReadTimeout(Duration.ofMillis(warmupProperties.getReadTimeoutMilliseconds()))
+                .build();
+        // 定时检查可能在启动预热之前执行，常驻模型在创建时就按配置确定
+        this.pinnedModelId = configuredPinnedModelId();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Async("taskExecutor")
+    public void warmUpOnStartup() {
+        if (!warmupProperties.isEnabled() || !warmupProperties.isWarmUpOnStartup()) {
+            return;
+        }
+        // 逐个加载，避免同时加载多个模型占满显存；常驻模型最后加载，不会被其他模型挤出
+        modelProperties.getOptions().keySet().stream()
+                .sorted((a, b) -> Boolean.compare(a.equals(pinnedModelId), b.equals(pinnedModelId)))
+                .forEach(modelId -> load(modelId, "startup"));
+        refreshLoadedModels();
+    }
+
+    /**
+     * 定时检查模型加载状态，重新加载最近有请求但已被卸载的模型
+     */
+    @Scheduled(fixedDelayString = "${chatbot.warmup.check-interval-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void keepAlive() {
+        if (!warmupProperties.isEnabled()) {
+            return;
+        }
+        refreshLoadedModels();
+        updatePinnedModel();
+
+        long windowMillis = Duration.ofMinutes(warmupProperties.getTrafficWindowMinutes()).toMillis();
+        long now = System.currentTimeMillis();
+        for (String modelId : modelProperties.getOptions().keySet()) {
+            ModelUsage usage = usages.get(modelId);
+            boolean recentlyUsed = usage != null && now - usage.lastRequestAt.get() <= windowMillis;
+            if (recentlyUsed || modelId.equals(pinnedModelId)) {
+                ModelProperties.ModelOption option = modelProperties.getOptions().get(modelId);
+                for (String baseUrl : baseUrls(option)) {
+                    if (!loadedModels.contains(loadedKey(baseUrl, option.getModel()))) {
+                        load(modelId, baseUrl, "keep-alive");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录一次聊天请求
+     *
+     * @param modelId 模型ID
+     * @return 模型当前是否未加载，即本次请求是否为冷启动
+     */
+    public boolean recordRequest(String modelId) {
+        usages.computeIfAbsent(modelId, id -> new ModelUsage()).record();
+        if (!warmupProperties.isEnabled() || isLoaded(modelId)) {
+            return false;
+        }
+        Counter.builder("chatbot.model.cold.start.requests")
+                .tag("model", modelId)
+                .description("Chat requests that arrived while their model was not loaded")
+                .register(meterRegistry)
+                .increment();
+        return true;
+    }
+
+    /**
+     * 记录冷启动的流式请求从发出到收到首个输出的耗时
+     */
+    public void recordColdStart(String modelId, Duration timeToFirstToken) {
+        Timer.builder("chatbot.model.cold.start")
+                .tag("model", modelId)
+                .description("Time to first token of chat requests that had to load their model")
+                .register(meterRegistry)
+                .record(timeToFirstToken);
+        markLoaded(modelId);
+    }
+
+    /**
+     * 记录冷启动的同步请求从发出到返回完整回答的耗时，包含生成全部内容的时间，不能与首个输出延迟比较
+     */
+    public void recordColdStartCall(String modelId, Duration callLatency) {
+        Timer.builder("chatbot.model.cold.start.call")
+                .tag("model", modelId)
+                .description("Total latency of non-streaming chat requests that had to load their model")
+                .register(meterRegistry)
+                .record(callLatency);
+        markLoaded(modelId);
+    }
+
+    // 不知道请求被路由到哪个节点，先标记为已加载，下次检查时以Ollama返回的实际状态为准
+    private void markLoaded(String modelId) {
+        ModelProperties.ModelOption option = modelProperties.getOptions().get(modelId);
+        if (option != null) {
+            baseUrls(option).forEach(baseUrl -> markLoaded(baseUrl, option.getModel()));
+        }
+    }
+
+    /**
+     * 获取模型请求使用的keep_alive，常驻模型始终为-1m
+     *
+     * @param modelId    模型ID
+     * @param configured 模型配置的keep_alive
+     */
+    public String keepAliveFor(String modelId, String configured) {
+        return modelId.equals(pinnedModelId) ? PINNED_KEEP_ALIVE : configured;
+    }
+
+    // 在模型的所有节点上加载模型
+    private void load(String modelId, String trigger) {
+        ModelProperties.ModelOption option = modelProperties.getOptions().get(modelId);
+        if (option == null) {
+            return;
+        }
+        for (String baseUrl : baseUrls(option)) {
+            load(modelId, baseUrl, trigger);
+        }
+    }
+
+    // 以空提示词调用generate接口，Ollama只加载模型并按keep_alive保留
+    private void load(String modelId, String baseUrl, String trigger) {
+        ModelProperties.ModelOption option = modelProperties.getOptions().get(modelId);
+        String keepAlive = keepAliveFor(modelId, option.getKeepAlive());
+        Map<String, Object> request = new HashMap<>();
+        request.put("model", option.getModel());
+        if (StringUtils.hasText(keepAlive)) {
+            request.put("keep_alive", keepAlive);
+        }
+        if (option.getNumCtx() != null) {
+            // 与聊天请求的上下文大小一致，否则第一次聊天请求仍会重新加载模型
+            request.put("options", Map.of("num_ctx", option.getNumCtx()));
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            restTemplate.postForObject(baseUrl + "/api/generate", request, Map.class);
+            long nanos = sample.stop(Timer.builder("chatbot.model.load")
+                    .tag("model", modelId)
+                    .tag("trigger", trigger)
+                    .description("Time taken to load a model in Ollama")
+                    .register(meterRegistry));
+            markLoaded(baseUrl, option.getModel());
+            log.info("Loaded model {} on {} ({}) in {} ms, keep_alive={}",
+                    modelId, baseUrl, trigger, nanos / 1_000_000, keepAlive);
+        } catch (Exception e) {
+            log.warn("Failed to load model {} on {} ({}): {}", modelId, baseUrl, trigger, e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void refreshLoadedModels() {
+        Set<String> baseUrls = modelProperties.getOptions().values().stream()
+                .flatMap(option -> baseUrls(option).stream())
+                .collect(Collectors.toSet());
+        Set<String> loaded = new HashSet<>();
+        for (String baseUrl : baseUrls) {
+            try {
+                Map<String, Object> response = restTemplate.getForObject(baseUrl + "/api/ps", Map.class);
+                List<Map<String, Object>> models = response == null ? List.of()
+                        : (List<Map<String, Object>>) response.getOrDefault("models", List.of());
+                models.forEach(model -> loaded.add(loadedKey(baseUrl, (String) model.get("model"))));
+            } catch (Exception e) {
+                log.warn("Failed to query loaded models from {}: {}", baseUrl, e.getMessage());
+            }
+        }
+        loadedModels = Set.copyOf(loaded);
+    }
+
+    // 未指定常驻模型时，按最近请求量选择常驻模型
+    private void updatePinnedModel() {
+        usages.values().forEach(ModelUsage::decay);
+        String pinned = configuredPinnedModelId();
+        if (pinned == null && warmupProperties.isPinHottest()) {
+            pinned = usages.entrySet().stream()
+                    .filter(e -> modelProperties.getOptions().containsKey(e.getKey()))
+                    .filter(e -> e.getValue().recentRequests > 0)
+                    .max(Comparator.comparingDouble(e -> e.getValue().recentRequests))
+                    .map(Map.Entry::getKey)
+                    .orElse(pinnedModelId);
+        }
+        String previous = pinnedModelId;
+        pinnedModelId = pinned;
+        if (pinned != null && !pinned.equals(previous)) {
+            log.info("Pinning model {} in memory (previously {})", pinned, previous);
+            load(pinned, "pin");
+            if (previous != null) {
+                // 原常驻模型恢复为配置的keep_alive，空闲后可以被卸载
+                load(previous, "unpin");
+            }
+        }
+    }
+
+    private String configuredPinnedModelId() {
+        String pinned = warmupProperties.getPinnedModelId();
+        return StringUtils.hasText(pinned) ? pinned : null;
+    }
+
+    // 路由会避开首个输出延迟高的节点，只要有一个节点已加载就不算冷启动
+    private boolean isLoaded(String modelId) {
+        ModelProperties.ModelOption option = modelProperties.getOptions().get(modelId);
+        return option != null && baseUrls(option).stream()
+                .anyMatch(baseUrl -> loadedModels.contains(loadedKey(baseUrl, option.getModel())));
+    }
+
+    private void markLoaded(String baseUrl, String model) {
+        String key = loadedKey(baseUrl, model);
+        if (!loadedModels.contains(key)) {
+            Set<String> updated = new HashSet<>(loadedModels);
+            updated.add(key);
+            loadedModels = Set.copyOf(updated);
+        }
+    }
+
+    private List<String> baseUrls(ModelProperties.ModelOption option) {
+        return option.getEndpoints() == null || option.getEndpoints().isEmpty()
+                ? List.of(ollamaBaseUrl) : option.getEndpoints();
+    }
+
+    private String loadedKey(String baseUrl, String model) {
+        return baseUrl + " " + model;
+    }
+
+    // 模型的请求统计：最近一次请求时间和按检查周期衰减的请求量
+    private static class ModelUsage {
+        private final AtomicLong lastRequestAt = new AtomicLong();
+        private final AtomicLong requestsSinceCheck = new AtomicLong();
+        private volatile double recentRequests;
+
+        void record() {
+            lastRequestAt.set(System.currentTimeMillis());
+            requestsSinceCheck.incrementAndGet();
+        }
+
+        // 每个检查周期调用一次，较早的请求量每个周期减半
+        void decay() {
+            recentRequests = recentRequests * 0.5 + requestsSinceCheck.getAndSet(0);
+        }
+    }
+}
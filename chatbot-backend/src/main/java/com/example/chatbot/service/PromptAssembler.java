@@ -0,0 +1,188 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.ChatMessage;
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.properties.PromptProperties;
+import com.example.chatbot.util.TokenEstimator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按token预算组装提示词
+ *
+ * 用户问题始终完整保留，剩余预算按配置比例分给系统提示词、知识库文档和历史消息：
+ * 文档按相关度顺序放入，超长的文档被截断，放不下的低相关度文档被丢弃；
+ * 历史消息从最新的一条开始保留，超出预算的较早消息被丢弃；会话摘要优先于历史消息放入。
+ *
+ * 为了让模型复用上一轮已经计算过的提示词前缀，消息顺序固定为系统提示词、摘要、历史消息、本轮问题，
+ * 知识库内容只附加在最后一条消息中。历史消息从上一轮的起点开始保留，只有放不下时才重新确定起点，
+ * 并一次丢弃较多的早期消息，使新的起点能在之后若干轮对话中保持不变。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PromptAssembler {
+    private final PromptProperties promptProperties;
+
+    // 每条消息的角色标记等固定开销
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final String CONTEXT_HEADER = "结合以下知识库内容回答：\n";
+    private static final String SUMMARY_HEADER = "之前对话的摘要：\n";
+    private static final String SUMMARY_ROLE = "summary";
+
+    /**
+     * 组装发送给模型的消息列表
+     *
+     * @param systemPrompt 系统提示词
+     * @param history      历史消息，按时间正序排列，第一条可以是会话摘要
+     * @param docs         知识库文档，按相关度从高到低排列
+     * @param question     用户问题
+     * @param anchor       上一轮保留的第一条历史消息的创建时间，没有时传null
+     * @return 消息列表（系统提示词、历史消息、附带知识库内容的用户问题）和本轮历史消息的起点
+     */
+    public AssembledPrompt assemble(String systemPrompt, List<ChatMessage> history,
+                                    List<KnowledgeBase> docs, String question, LocalDateTime anchor) {
+        int budget = Math.max(0, promptProperties.getMaxTokens() - TokenEstimator.estimate(question) - MESSAGE_OVERHEAD_TOKENS);
+        double totalShare = promptProperties.getSystemShare() + promptProperties.getDocumentShare()
+                + promptProperties.getHistoryShare();
+
+        // 1. 系统提示词
+        int systemBudget = share(budget, promptProperties.getSystemShare(), totalShare);
+        String system = TokenEstimator.truncate(systemPrompt, systemBudget - MESSAGE_OVERHEAD_TOKENS);
+        if (system.length() < systemPrompt.length()) {
+            log.warn("System prompt truncated to fit its share of {} tokens", systemBudget);
+        }
+        int systemUsed = TokenEstimator.estimate(system) + MESSAGE_OVERHEAD_TOKENS;
+
+        // 2. 知识库文档，可以使用系统提示词未用完的预算
+        int documentBudget = share(budget, promptProperties.getDocumentShare(), totalShare) + systemBudget - systemUsed;
+        String context = buildContext(docs, documentBudget);
+        int documentUsed = TokenEstimator.estimate(context);
+
+        // 3. 会话摘要和历史消息，可以使用剩余的全部预算
+        int historyBudget = budget - systemUsed - documentUsed;
+        String summary = "";
+        if (!history.isEmpty() && SUMMARY_ROLE.equals(history.get(0).getRole())) {
+            summary = TokenEstimator.truncate(SUMMARY_HEADER + history.get(0).getContent(),
+                    historyBudget - MESSAGE_OVERHEAD_TOKENS);
+            if (!summary.isEmpty()) {
+                historyBudget -= TokenEstimator.estimate(summary) + MESSAGE_OVERHEAD_TOKENS;
+            }
+            history = history.subList(1, history.size());
+        }
+        int start = historyStart(history, historyBudget, anchor);
+        List<Message> historyMessages = toMessages(history.subList(start, history.size()));
+
+        List<Message> messages = new ArrayList<>(historyMessages.size() + 3);
+        messages.add(new SystemMessage(system));
+        if (!summary.isEmpty()) {
+            messages.add(new SystemMessage(summary));
+        }
+        messages.addAll(historyMessages);
+        messages.add(new UserMessage(context.isEmpty() ? question : question + "\n\n" + context));
+
+        log.debug("Prompt assembled: system={} docs={} history={}/{} messages, budget={} tokens",
+                systemUsed, documentUsed, historyMessages.size(), history.size(), promptProperties.getMaxTokens());
+        return new AssembledPrompt(messages, start < history.size() ? history.get(start).getCreatedAt() : null);
+    }
+
+    // 按相关度顺序放入文档，单篇文档不超过maxDocumentTokens
+    private String buildContext(List<KnowledgeBase> docs, int budget) {
+        int used = TokenEstimator.estimate(CONTEXT_HEADER);
+        if (docs.isEmpty() || budget - used < promptProperties.getMinDocumentTokens()) {
+            return "";
+        }
+        StringBuilder contextBuilder = new StringBuilder(CONTEXT_HEADER);
+        int included = 0;
+        for (KnowledgeBase doc : docs) {
+            String title = "标题：" + doc.getTitle() + "\n";
+            int titleTokens = TokenEstimator.estimate(title) + TokenEstimator.estimate("内容：");
+            int available = Math.min(budget - used, promptProperties.getMaxDocumentTokens()) - titleTokens;
+            String content = doc.getContent() == null ? "" : doc.getContent();
+            int contentTokens = TokenEstimator.estimate(content);
+            if (contentTokens > available) {
+                // 放不下完整内容时截断，剩余预算太少则跳过该文档，继续尝试后面较短的文档
+                if (available < promptProperties.getMinDocumentTokens()) {
+                    continue;
+                }
+                content = TokenEstimator.truncate(content, available);
+                contentTokens = TokenEstimator.estimate(content);
+            }
+            contextBuilder.append(title);
+            contextBuilder.append("内容：").append(content).append("\n\n");
+            used += titleTokens + contentTokens;
+            included++;
+        }
+        if (included < docs.size()) {
+            log.debug("Dropped {} of {} documents to fit the document budget of {} tokens",
+                    docs.size() - included, docs.size(), budget);
+        }
+        return included == 0 ? "" : contextBuilder.toString();
+    }
+
+    // 上一轮的起点之后的消息仍然放得下时沿用该起点，否则从最新的消息开始向前保留，只用部分预算
+    private int historyStart(List<ChatMessage> history, int budget, LocalDateTime anchor) {
+        if (anchor != null) {
+            int used = 0;
+            for (int i = history.size() - 1; i >= 0; i--) {
+                ChatMessage msg = history.get(i);
+                used += TokenEstimator.estimate(msg.getContent()) + MESSAGE_OVERHEAD_TOKENS;
+                if (used > budget || msg.getCreatedAt().isBefore(anchor)) {
+                    break;
+                }
+                if (msg.getCreatedAt().isEqual(anchor)) {
+                    return i;
+                }
+            }
+        }
+
+        // 起点已不在窗口中或放不下，重新确定起点并为之后的对话预留空间
+        int reanchorBudget = anchor == null ? budget : (int) (budget * promptProperties.getHistoryReanchorShare());
+        int used = 0;
+        int start = history.size();
+        while (start > 0) {
+            ChatMessage msg = history.get(start - 1);
+            int tokens = TokenEstimator.estimate(msg.getContent()) + MESSAGE_OVERHEAD_TOKENS;
+            if (used + tokens > reanchorBudget) {
+                break;
+            }
+            used += tokens;
+            start--;
+        }
+        return start;
+    }
+
+    private List<Message> toMessages(List<ChatMessage> history) {
+        List<Message> messages = new ArrayList<>(history.size());
+        for (ChatMessage msg : history) {
+            if ("user".equals(msg.getRole())) {
+                messages.add(new UserMessage(msg.getContent()));
+            } else {
+                messages.add(new AssistantMessage(msg.getContent()));
+            }
+        }
+        return messages;
+    }
+
+    private int share(int budget, double share, double totalShare) {
+        return totalShare <= 0 ? 0 : (int) (budget * share / totalShare);
+    }
+
+    /**
+     * 组装结果
+     *
+     * @param messages 发送给模型的消息列表
+     * @param anchor   保留的第一条历史消息的创建时间，没有历史消息时为null
+     */
+    public record AssembledPrompt(List<Message> messages, LocalDateTime anchor) {
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.properties.PromptProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 会话提示词前缀跟踪
+ *
+ * Ollama在模型保持加载时会复用与上一次请求相同的提示词前缀，只计算新增的部分。
+ * 这里记录每个会话上一轮的历史起点和前缀摘要，下一轮沿用同一起点组装提示词，
+ * 并检查新提示词是否以上一轮的前缀开头，统计前缀命中和失效的次数。
+ * 记录的会话数超过上限时由Caffeine按访问频率和时间淘汰，不需要遍历全部记录。
+ */
+@Service
+public class PromptPrefixTracker {
+    private final Cache<String, PrefixState> states;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public PromptPrefixTracker(PromptProperties promptProperties, MeterRegistry meterRegistry) {
+        this.states = Caffeine.newBuilder()
+                .maximumSize(promptProperties.getMaxTrackedSessions())
+                .build();
+        this.hitCounter = Counter.builder("chatbot.prompt.prefix")
+                .tag("result", "hit")
+                .description("Turns whose prompt starts with the previous turn's prompt prefix")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("chatbot.prompt.prefix")
+                .tag("result", "miss")
+                .description("Turns whose prompt no longer matches the previous turn's prompt prefix")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取会话上一轮的历史起点
+     *
+     * @return 上一轮保留的第一条历史消息的创建时间，没有记录时返回null
+     */
+    public LocalDateTime getAnchor(String sessionId, Long userId) {
+        PrefixState state = states.getIfPresent(key(sessionId, userId));
+        return state != null ? state.anchor() : null;
+    }
+
+    /**
+     * 记录本轮的提示词前缀，并与上一轮的前缀比较
+     *
+     * @param messages 本轮发送给模型的消息，最后一条为附带知识库内容的问题，不计入前缀
+     * @param anchor   本轮保留的第一条历史消息的创建时间
+     */
+    public void record(String sessionId, Long userId, List<Message> messages, LocalDateTime anchor) {
+        String key = key(sessionId, userId);
+        List<Message> prefix = messages.subList(0, messages.size() - 1);
+        PrefixState previous = states.getIfPresent(key);
+        if (previous != null) {
+            boolean matched = previous.messageCount() <= prefix.size()
+                    && previous.hash().equals(hash(prefix.subList(0, previous.messageCount())));
+            (matched ? hitCounter : missCounter).increment();
+        }
+        states.put(key, new PrefixState(anchor, prefix.size(), hash(prefix)));
+    }
+
+    /**
+     * 删除会话的前缀记录
+     */
+    public void remove(String sessionId, Long userId) {
+        states.invalidate(key(sessionId, userId));
+    }
+
+    private String hash(List<Message> messages) {
+        StringBuilder builder = new StringBuilder();
+        for (Message message : messages) {
+            builder.append(message.getMessageType().getValue()).append('\u0000')
+                    .append(message.getText()).append('\u0000');
+        }
+        return DigestUtils.md5DigestAsHex(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String key(String sessionId, Long userId) {
+        return userId + ":" + sessionId;
+    }
+
+    private record PrefixState(LocalDateTime anchor, int messageCount, String hash) {
+    }
+}
@@ -2,8 +2,10 @@ package com.example.chatbot.service;
 
 import com.example.chatbot.entity.KnowledgeBase;
 import org.springframework.data.redis.core.RedisTemplate;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
 
 public interface RedisService {
     /**
@@ -16,6 +18,13 @@ public interface RedisService {
      */
     void saveDocToRedis(KnowledgeBase knowledge);
 
+    /**
+     * 以管道方式批量将知识库文档保存到Redis
+     * @param docs 知识库文档
+     * @param hits 每篇文档累计的访问次数，以文档ID为键
+     */
+    void saveDocsToRedis(List<KnowledgeBase> docs, Map<Long, Integer> hits);
+
     /**
      * 增加知识库文档的访问分数
      */
@@ -26,6 +35,11 @@ public interface RedisService {
      */
     List<KnowledgeBase> searchKnowledge(List<String> keywords);
 
+    /**
+     * 根据关键词搜索知识库文档，使用响应式Redis客户端，不阻塞调用线程
+     */
+    Mono<List<KnowledgeBase>> searchKnowledgeReactive(List<String> keywords);
+
     /**
      * 获取热门知识库文档
      */
@@ -0,0 +1,191 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.properties.AnswerCacheProperties;
+import com.example.chatbot.util.KnowledgeFingerprint;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 语义答案缓存
+ *
+ * 使用与向量检索相同的向量化服务计算问题向量，新问题与已缓存问题的余弦相似度达到阈值，
+ * 且本次检索到的知识库文档（ID、更新时间和内容）与生成答案时完全一致时，直接返回缓存的答案，不再调用模型。
+ * 答案依赖会话上下文，因此只用于没有历史消息的第一轮提问。
+ *
+ * 答案按模型和知识库指纹分组保存在Caffeine缓存中，查找时只与同一分组内的问题比较相似度，
+ * 不再扫描全部答案。缓存按答案数量限制容量，超出时由Caffeine按访问频率淘汰整个分组。
+ * 问题向量化在生成答案之前执行，超过embeddingTimeoutMilliseconds仍未返回时跳过缓存，不拖慢聊天请求。
+ */
+@Slf4j
+@Service
+public class SemanticAnswerCache {
+    private final AnswerCacheProperties answerCacheProperties;
+    private final WebClient plainWebClient;
+    private final Cache<BucketKey, List<Entry>> buckets;
+
+    @Value("${embedding.url}")
+    private String embeddingUrl;
+
+    public SemanticAnswerCache(AnswerCacheProperties answerCacheProperties, WebClient plainWebClient) {
+        this.answerCacheProperties = answerCacheProperties;
+        this.plainWebClient = plainWebClient;
+        this.buckets = Caffeine.newBuilder()
+                .maximumWeight(answerCacheProperties.getMaxEntries())
+                .weigher((BucketKey key, List<Entry> entries) -> entries.size())
+                .expireAfterWrite(Duration.ofMinutes(answerCacheProperties.getTtlMinutes()))
+                .build();
+    }
+
+    /**
+     * 查找语义相近且知识库内容未变化的缓存答案
+     *
+     * @param question 清理后的用户问题
+     * @param modelId  模型ID
+     * @param docs     本次检索到的知识库文档
+     * @return 查找结果，未启用或向量化失败时返回不可缓存的结果
+     */
+    public Mono<Lookup> lookup(String question, String modelId, List<KnowledgeBase> docs) {
+        if (!answerCacheProperties.isEnabled()) {
+            return Mono.just(Lookup.DISABLED);
+        }
+        Duration timeout = Duration.ofMillis(answerCacheProperties.getEmbeddingTimeoutMilliseconds());
+        return embed(question)
+                .timeout(timeout)
+                .map(embedding -> findBest(question, modelId, embedding, docs))
+                .onErrorResume(TimeoutException.class, e -> {
+                    log.warn("Embedding the question took longer than {} ms, skipping the answer cache", timeout.toMillis());
+                    return Mono.just(Lookup.DISABLED);
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to embed question for the answer cache, skipping cache", e);
+                    return Mono.just(Lookup.DISABLED);
+                });
+    }
+
+    private Lookup findBest(String question, String modelId, float[] embedding, List<KnowledgeBase> docs) {
+        String fingerprint = KnowledgeFingerprint.of(docs);
+        long now = System.currentTimeMillis();
+        long ttlMillis = answerCacheProperties.getTtlMinutes() * 60_000;
+
+        Entry best = null;
+        double bestSimilarity = answerCacheProperties.getSimilarityThreshold();
+        List<Entry> candidates = buckets.getIfPresent(new BucketKey(modelId, fingerprint));
+        for (Entry entry : candidates != null ? candidates : List.<Entry>of()) {
+            // 分组在每次写入时重新计时，其中较早的答案单独判断是否过期
+            if (now - entry.createdAt() > ttlMillis) {
+                continue;
+            }
+            double similarity = dot(entry.embedding(), embedding);
+            if (similarity >= bestSimilarity) {
+                best = entry;
+                bestSimilarity = similarity;
+            }
+        }
+        if (best != null) {
+            log.debug("Answer cache hit for model {} with similarity {}", modelId, bestSimilarity);
+        }
+        return new Lookup(question, modelId, embedding, fingerprint, best != null ? best.answer() : null);
+    }
+
+    /**
+     * 缓存模型生成的答案
+     *
+     * @param lookup 生成答案前的查找结果
+     * @param answer 清理后的答案
+     */
+    public void put(Lookup lookup, String answer) {
+        if (lookup.embedding() == null || answer == null || answer.isBlank()) {
+            return;
+        }
+        Entry entry = new Entry(lookup.question(), lookup.embedding(), answer, System.currentTimeMillis());
+        long ttlMillis = answerCacheProperties.getTtlMinutes() * 60_000;
+        // 分组不可变，写入时复制一份，Caffeine据此重新计算分组的权重
+        buckets.asMap().compute(new BucketKey(lookup.modelId(), lookup.knowledgeFingerprint()), (key, entries) -> {
+            List<Entry> updated = new ArrayList<>();
+            if (entries != null) {
+                for (Entry existing : entries) {
+                    if (!existing.question().equals(entry.question())
+                            && entry.createdAt() - existing.createdAt() <= ttlMillis) {
+                        updated.add(existing);
+                    }
+                }
+            }
+            updated.add(entry);
+            // 单个分组不超过总容量，超出时丢弃最早写入的答案
+            int overflow = updated.size() - Math.max(1, answerCacheProperties.getMaxEntries());
+            return List.copyOf(overflow > 0 ? updated.subList(overflow, updated.size()) : updated);
+        });
+    }
+
+    private Mono<float[]> embed(String text) {
+        return plainWebClient.post()
+                .uri(embeddingUrl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("text", text))
+                .retrieve()
+                .bodyToMono(List.class)
+                .map(this::normalize);
+    }
+
+    private float[] normalize(List<?> body) {
+        if (body.isEmpty()) {
+            throw new IllegalStateException("Empty response from embedding service");
+        }
+        // 归一化后余弦相似度即为点积
+        float[] vector = new float[body.size()];
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = ((Number) body.get(i)).floatValue();
+            norm += vector[i] * vector[i];
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= (float) norm;
+            }
+        }
+        return vector;
+    }
+
+    private double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    // 同一模型、同一组知识库文档下的答案
+    private record BucketKey(String modelId, String knowledgeFingerprint) {
+    }
+
+    private record Entry(String question, float[] embedding, String answer, long createdAt) {
+    }
+
+    /**
+     * 缓存查找结果，未命中时保留问题向量和知识库指纹，供生成答案后写入缓存
+     */
+    public record Lookup(String question, String modelId, float[] embedding, String knowledgeFingerprint, String answer) {
+        public static final Lookup DISABLED = new Lookup(null, null, null, null, null);
+
+        public boolean hit() {
+            return answer != null;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.dto.ChatResponse;
+import com.example.chatbot.exception.BusinessException;
+import com.example.chatbot.exception.ErrorCode;
+import com.example.chatbot.properties.StreamProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 流式回答的断线续传
+ *
+ * 每个流式回答有一个messageId，回答的每一帧按序号写入Redis Stream（条目ID为0-序号），结束时追加一条结束标记，
+ * 写入后刷新过期时间。模型输出由本实例共享：客户端全部断开后在宽限时间内生成继续进行，超过宽限时间仍无人重连则取消生成。
+ * 重连的客户端带上最后收到的序号，在本实例上直接订阅进行中的回答，从内存中补发缺失的帧后继续接收；
+ * 回答在其他实例上生成或已经结束时，从Redis Stream中读取缺失的帧，未结束时按间隔轮询直到读到结束标记。
+ * 续传不会再次调用模型。
+ */
+@Slf4j
+@Service
+public class StreamResumeBuffer {
+    private static final String STREAM_KEY = "chat:stream:";
+    private static final String FRAME_FIELD = "frame";
+    private static final String END_FIELD = "end";
+    private static final String END_COMPLETE = "complete";
+    private static final String END_ERROR = "error";
+    private static final String END_CANCELLED = "cancelled";
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final StreamProperties streamProperties;
+    private final Map<String, Flux<ChatResponse>> live = new ConcurrentHashMap<>();
+    private final Counter localResumeCounter;
+    private final Counter remoteResumeCounter;
+
+    public StreamResumeBuffer(ReactiveStringRedisTemplate reactiveStringRedisTemplate, ObjectMapper objectMapper,
+                              StreamProperties streamProperties, MeterRegistry meterRegistry) {
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.streamProperties = streamProperties;
+        this.localResumeCounter = resumeCounter(meterRegistry, "local");
+        this.remoteResumeCounter = resumeCounter(meterRegistry, "redis");
+    }
+
+    private Counter resumeCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("chatbot.chat.stream.resumed")
+                .tag("source", source)
+                .description("Streamed answers resumed by a reconnecting client")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录流式回答并在本实例内共享，客户端全部断开超过宽限时间后取消上游生成
+     *
+     * @param userId    用户ID
+     * @param messageId 回答ID
+     * @param frames    回答的帧，序号从1开始递增
+     * @return 共享的回答流
+     */
+    public Flux<ChatResponse> record(Long userId, String messageId, Flux<ChatResponse> frames) {
+        if (!streamProperties.isResumeEnabled()) {
+            return frames;
+        }
+        String key = streamKey(userId, messageId);
+
+        // 帧按顺序写入Redis，写入较慢时在内存中排队，不拖慢发给客户端的输出
+        Sinks.Many<MapRecord<String, String, String>> writes = Sinks.many().unicast().onBackpressureBuffer();
+        writes.asFlux()
+                .concatMap(this::write)
+                .subscribe();
+
+        AtomicLong lastSequence = new AtomicLong();
+        AtomicReference<Flux<ChatResponse>> shared = new AtomicReference<>();
+        shared.set(frames
+                .doOnSubscribe(subscription -> live.put(key, shared.get()))
+                .doOnNext(frame -> {
+                    lastSequence.set(frame.getSequence());
+                    writes.tryEmitNext(frameRecord(key, frame));
+                })
+                .doOnComplete(() -> writes.tryEmitNext(endRecord(key, lastSequence.get() + 1, END_COMPLETE)))
+                .doOnError(error -> writes.tryEmitNext(endRecord(key, lastSequence.get() + 1, END_ERROR)))
+                .doOnCancel(() -> writes.tryEmitNext(endRecord(key, lastSequence.get() + 1, END_CANCELLED)))
+                .doFinally(signal -> {
+                    writes.tryEmitComplete();
+                    live.remove(key, shared.get());
+                })
+                .replay()
+                .refCount(1, Duration.ofMillis(streamProperties.getDisconnectGraceMilliseconds())));
+        return shared.get();
+    }
+
+    /**
+     * 续传流式回答
+     *
+     * @param userId       用户ID
+     * @param messageId    回答ID
+     * @param lastSequence 客户端最后收到的帧序号，从头接收时为0
+     * @return 序号大于lastSequence的帧
+     * @throws BusinessException 回答不存在或已过期
+     */
+    public Flux<ChatResponse> resume(Long userId, String messageId, long lastSequence) {
+        String key = streamKey(userId, messageId);
+        return Flux.defer(() -> {
+            Flux<ChatResponse> shared = live.get(key);
+            if (shared != null) {
+                localResumeCounter.increment();
+                log.debug("Resuming in-flight answer {} after sequence {}", messageId, lastSequence);
+                return shared.filter(frame -> frame.getSequence() > lastSequence);
+            }
+            return reactiveStringRedisTemplate.hasKey(key).flatMapMany(exists -> {
+                if (!exists) {
+                    return Flux.error(new BusinessException(ErrorCode.STREAM_NOT_FOUND));
+                }
+                remoteResumeCounter.increment();
+                log.debug("Resuming answer {} from Redis after sequence {}", messageId, lastSequence);
+                return poll(key, lastSequence);
+            });
+        });
+    }
+
+    // 读取游标之后的条目，未读到结束标记时按间隔继续读取，最多等待到回答过期；已取消的回答只补发已生成的部分
+    private Flux<ChatResponse> poll(String key, long lastSequence) {
+        AtomicLong cursor = new AtomicLong(lastSequence);
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(streamProperties.getResumePollMilliseconds()))
+                .onBackpressureDrop()
+                .concatMap(tick -> readAfter(key, cursor), 1)
+                .takeUntil(batch -> batch.end() != null)
+                .take(Duration.ofSeconds(streamProperties.getResumeTtlSeconds()))
+                .concatMap(batch -> {
+                    Flux<ChatResponse> frames = Flux.fromIterable(batch.frames());
+                    if (END_ERROR.equals(batch.end())) {
+                        return frames.concatWith(Mono.error(
+                                new BusinessException(ErrorCode.INTERNAL_SERVER_ERROR, "回答生成失败")));
+                    }
+                    return frames;
+                });
+    }
+
+    private Mono<Batch> readAfter(String key, AtomicLong cursor) {
+        Range<String> range = Range.rightUnbounded(Range.Bound.inclusive(recordId(cursor.get() + 1).getValue()));
+        return streamOperations().range(key, range)
+                .collectList()
+                .map(records -> {
+                    List<ChatResponse> frames = new ArrayList<>(records.size());
+                    for (MapRecord<String, String, String> record : records) {
+                        String end = record.getValue().get(END_FIELD);
+                        if (end != null) {
+                            return new Batch(frames, end);
+                        }
+                        frames.add(readFrame(record.getValue().get(FRAME_FIELD)));
+                        cursor.set(record.getId().getSequence());
+                    }
+                    return new Batch(frames, null);
+                });
+    }
+
+    private Mono<Void> write(MapRecord<String, String, String> record) {
+        return streamOperations().add(record)
+                .then(reactiveStringRedisTemplate.expire(record.getStream(),
+                        Duration.ofSeconds(streamProperties.getResumeTtlSeconds())))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("Failed to buffer stream entry {} of {}", record.getId(), record.getStream(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private MapRecord<String, String, String> frameRecord(String key, ChatResponse frame) {
+        try {
+            return StreamRecords.newRecord()
+                    .in(key)
+                    .withId(recordId(frame.getSequence()))
+                    .ofMap(Map.of(FRAME_FIELD, objectMapper.writeValueAsString(frame)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize chat response", e);
+        }
+    }
+
+    private MapRecord<String, String, String> endRecord(String key, long sequence, String end) {
+        return StreamRecords.newRecord()
+                .in(key)
+                .withId(recordId(sequence))
+                .ofMap(Map.of(END_FIELD, end));
+    }
+
+    private ChatResponse readFrame(String json) {
+        try {
+            return objectMapper.readValue(json, ChatResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to deserialize buffered chat response", e);
+        }
+    }
+
+    private ReactiveStreamOperations<String, String, String> streamOperations() {
+        return reactiveStringRedisTemplate.opsForStream();
+    }
+
+    // 条目ID的毫秒部分固定为0，序号部分即为帧序号，按ID范围读取即可从指定帧开始
+    private RecordId recordId(long sequence) {
+        return RecordId.of(0, sequence);
+    }
+
+    private String streamKey(Long userId, String messageId) {
+        return STREAM_KEY + userId + ":" + messageId;
+    }
+
+    private record Batch(List<ChatResponse> frames, String end) {
+    }
+}
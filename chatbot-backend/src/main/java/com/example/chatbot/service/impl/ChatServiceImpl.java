@@ -1,201 +1,236 @@
 package com.example.chatbot.service.impl;
 
+import com.example.chatbot.properties.ChatHistoryProperties;
 import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.properties.StreamProperties;
 import com.example.chatbot.dto.ChatRequest;
 import com.example.chatbot.dto.ChatResponse;
 import com.example.chatbot.entity.ChatMessage;
 import com.example.chatbot.entity.KnowledgeBase;
-import com.example.chatbot.entity.User;
 import com.example.chatbot.mapper.ChatMessageMapper;
 import com.example.chatbot.mapper.UserMapper;
+import com.example.chatbot.security.UserPrincipal;
+import com.example.chatbot.service.ChatHistoryCache;
+import com.example.chatbot.service.ChatMessageWriter;
+import com.example.chatbot.service.ChatModelRouter;
+import com.example.chatbot.service.ChatRequestCoalescer;
 import com.example.chatbot.service.ChatService;
-import com.example.chatbot.service.KnowledgeService;
+import com.example.chatbot.service.ConversationSummarizer;
+import com.example.chatbot.service.KnowledgeRetriever;
+import com.example.chatbot.service.ModelBulkhead;
+import com.example.chatbot.service.ModelWarmupService;
+import com.example.chatbot.service.PromptAssembler;
+import com.example.chatbot.service.PromptPrefixTracker;
 import com.example.chatbot.service.RedisDistributedLock;
-import com.example.chatbot.service.RedisService;
+import com.example.chatbot.service.SemanticAnswerCache;
+import com.example.chatbot.service.StreamResumeBuffer;
 import com.example.chatbot.util.KeywordExtractor;
+import com.example.chatbot.util.SseFrameCoalescer;
+import com.example.chatbot.util.ThinkBlockFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
-import org.springframework.ai.chat.messages.SystemMessage;
-import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.ollama.api.OllamaOptions;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ChatServiceImpl implements ChatService {
-    private final ChatClient chatClient;
+    private final ChatModelRouter chatModelRouter;
     private final ChatMessageMapper chatMessageMapper;
     private final UserMapper userMapper;
     private final ModelProperties modelProperties;
-    private final RedisService redisService;
     private final KeywordExtractor keywordExtractor;
-    private final KnowledgeService knowledgeService;
-    private final Scheduler elasticScheduler;
+    private final KnowledgeRetriever knowledgeRetriever;
     private final RedisDistributedLock distributedLock;
-    private static final int MIN_REQUIRED_RESULTS = 3;
+    private final ChatHistoryCache chatHistoryCache;
+    private final ChatMessageWriter chatMessageWriter;
+    private final PromptAssembler promptAssembler;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final ChatRequestCoalescer chatRequestCoalescer;
+    private final ConversationSummarizer conversationSummarizer;
+    private final ChatHistoryProperties historyProperties;
+    private final PromptPrefixTracker promptPrefixTracker;
+    private final ModelWarmupService modelWarmupService;
+    private final ModelBulkhead modelBulkhead;
+    private final StreamResumeBuffer streamResumeBuffer;
+    private final MeterRegistry meterRegistry;
+
+    private static final String SYSTEM_PROMPT = """
+            你是一个智能助手，名字叫强哥。请严格遵守以下规则：
+            1.**输出要求**：所有回答（包括流式输出）必须直接给出最终答案，完全省略思考过程、推理步骤或解释性文字。
+            2.**知识库优先级**：当用户提供本地知识库内容（通过UserMessage传递）时，必须优先分析知识库内容并结合自身知识库给出回答。
+            """;
+    private final StreamProperties streamProperties;
+
+    // 缓存命中时流式返回答案的分片长度
+    private static final int CACHED_ANSWER_CHUNK_SIZE = 32;
+    private static final Pattern HTML_TAG = Pattern.compile("<[^>]+>");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
 
-    private User getCurrentUser() {
+    // 用户ID由JWT过滤器放入认证信息，正常请求不需要查询用户表
+    private Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        return userMapper.findByUsername(username);
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getId();
+        }
+        return userMapper.findByUsername(authentication.getName()).getId();
     }
 
-    // 提取公共的消息处理逻辑
-    private ProcessMessageResult processMessageCommon(ChatRequest request) {
-        String sessionId = getOrCreateSessionId(request.getSessionId());
-        User currentUser = getCurrentUser();
-        String modelId = request.getModelId() != null ? request.getModelId() : "qwen3";
-        
-        // 清理用户消息
-        String cleanedMessage = cleanMessage(request.getMessage());
-
-        // 提取关键词并搜索相关文档
-        List<String> keywords = keywordExtractor.extractKeywords(cleanedMessage, 3);
-        List<KnowledgeBase> relevantDocs = searchRelevantDocuments(cleanedMessage, keywords);
-
-        // 构建上下文
-        StringBuilder contextBuilder = buildContextFromDocs(relevantDocs);
-        
-        // 构建消息上下文
-        List<Message> messages = buildMessageContext(sessionId);
-
-        //保存用户消息
-        saveUserMessage(cleanedMessage, sessionId, currentUser);
-        
-        // 如果有相关文档，添加到用户消息中
-        if (!contextBuilder.isEmpty()) {
-            String enhancedMessage = cleanedMessage + "\n\n" + contextBuilder;
-            messages.add(new UserMessage(enhancedMessage));
-        } else {
-            messages.add(new UserMessage(cleanedMessage));
-        }
+    // 提取公共的消息处理逻辑，全程不阻塞调用线程：Redis和知识库服务使用响应式客户端，数据库操作在JDBC线程池中执行
+    private Mono<ProcessMessageResult> processMessageCommon(ChatRequest request, Long userId) {
+        return Mono.defer(() -> {
+            String sessionId = getOrCreateSessionId(request.getSessionId());
+            String modelId = request.getModelId() != null ? request.getModelId() : "qwen3";
 
-        // 获取模型配置
-        ModelProperties.ModelOption modelOptions = modelProperties.getOptions().get(modelId);
-        if (modelOptions == null) {
-            throw new IllegalArgumentException("Invalid model ID: " + modelId);
-        }
+            // 获取模型配置
+            ModelProperties.ModelOption modelOptions = modelProperties.getOptions().get(modelId);
+            if (modelOptions == null) {
+                return Mono.error(new IllegalArgumentException("Invalid model ID: " + modelId));
+            }
+
+            // 清理用户消息
+            String cleanedMessage = cleanMessage(request.getMessage());
+
+            // 提取关键词并搜索相关文档，同时获取会话摘要和摘要之后的历史消息
+            List<String> keywords = keywordExtractor.extractKeywords(cleanedMessage, 3);
+            return Mono.zip(knowledgeRetriever.search(cleanedMessage, keywords), loadHistory(sessionId, userId))
+                    .flatMap(context -> {
+                        List<KnowledgeBase> relevantDocs = context.getT1();
+                        List<ChatMessage> history = context.getT2();
+
+                        // 第一轮提问时查找语义相近的缓存答案，并合并相同的并发提问；多轮对话的答案依赖上下文，都不适用
+                        Mono<SemanticAnswerCache.Lookup> cacheLookup = Mono.just(SemanticAnswerCache.Lookup.DISABLED);
+                        String coalescingKey = null;
+                        if (history.isEmpty()) {
+                            cacheLookup = semanticAnswerCache.lookup(cleanedMessage, modelId, relevantDocs);
+                            coalescingKey = chatRequestCoalescer.key(modelId, cleanedMessage, relevantDocs);
+                        }
+                        String key = coalescingKey;
+
+                        //保存用户消息
+                        return cacheLookup.flatMap(lookup -> saveUserMessage(cleanedMessage, sessionId, userId)
+                                .then(Mono.fromSupplier(() -> buildResult(sessionId, userId, modelId, modelOptions,
+                                        cleanedMessage, history, relevantDocs, lookup, key))));
+                    });
+        });
+    }
 
-        ChatOptions options = ChatOptions.builder()
+    private ProcessMessageResult buildResult(String sessionId, Long userId, String modelId,
+                                             ModelProperties.ModelOption modelOptions, String cleanedMessage,
+                                             List<ChatMessage> history, List<KnowledgeBase> relevantDocs,
+                                             SemanticAnswerCache.Lookup cacheLookup, String coalescingKey) {
+        // 按token预算组装系统提示词、历史消息和附带知识库内容的用户消息，历史消息沿用上一轮的起点以保持前缀不变
+        PromptAssembler.AssembledPrompt prompt = promptAssembler.assemble(SYSTEM_PROMPT, history, relevantDocs,
+                cleanedMessage, promptPrefixTracker.getAnchor(sessionId, userId));
+        promptPrefixTracker.record(sessionId, userId, prompt.messages(), prompt.anchor());
+
+        // keepAlive让模型和已计算的前缀在两轮对话之间保持加载，numCtx固定避免模型被重新加载
+        ChatOptions options = OllamaOptions.builder()
                 .model(modelOptions.getModel())
                 .temperature(modelOptions.getTemperature())
                 .topP(modelOptions.getTopP())
                 .topK(modelOptions.getTopK())
-                .maxTokens(modelOptions.getMaxTokens())
+                .numPredict(modelOptions.getMaxTokens())
                 .presencePenalty(modelOptions.getPresencePenalty())
                 .frequencyPenalty(modelOptions.getFrequencyPenalty())
-                .stopSequences(modelOptions.getStop())
+                .stop(modelOptions.getStop())
+                .keepAlive(modelWarmupService.keepAliveFor(modelId, modelOptions.getKeepAlive()))
+                .numCtx(modelOptions.getNumCtx())
                 .build();
 
-        return new ProcessMessageResult(messages, options, sessionId, modelId, currentUser);
+        return new ProcessMessageResult(prompt.messages(), options, sessionId, modelId, userId, cacheLookup, coalescingKey);
     }
 
-    // 搜索结果处理
-    private List<KnowledgeBase> searchRelevantDocuments(String cleanedMessage, List<String> keywords) {
-        List<KnowledgeBase> combinedResults = new ArrayList<>();
-        
-        // 1. 首先从Redis搜索相关文档
-        List<KnowledgeBase> redisResults = redisService.searchKnowledge(keywords);
-        if (!redisResults.isEmpty()) {
-            combinedResults.addAll(redisResults);
-        }
-        
-        // 2. 如果Redis结果数量小于要求的最小数量，进行向量搜索
-        if (combinedResults.size() < MIN_REQUIRED_RESULTS) {
-            try {
-                // 2.1 使用完整的cleanedMessage进行向量搜索
-                List<KnowledgeBase> vectorResults = knowledgeService.searchSimilar(cleanedMessage, MIN_REQUIRED_RESULTS);
-                if (vectorResults != null && !vectorResults.isEmpty()) {
-                    // 合并结果，去重
-                    for (KnowledgeBase kb : vectorResults) {
-                        if (!combinedResults.contains(kb)) {
-                            combinedResults.add(kb);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                log.warn("Vector search failed, falling back to keyword search only", e);
+    // 有摘要时返回摘要和摘要之后的消息，摘要之后的消息过多时触发异步压缩
+    private Mono<List<ChatMessage>> loadHistory(String sessionId, Long userId) {
+        return chatHistoryCache.getRecentMessages(sessionId, userId).flatMap(recent -> {
+            if (!historyProperties.isSummaryEnabled()) {
+                return Mono.just(recent);
             }
-        }
-        
-        // 3. 如果结果数量仍然小于要求的最小数量，进行关键词搜索
-        if (combinedResults.size() < MIN_REQUIRED_RESULTS) {
-            List<KnowledgeBase> keywordResults = searchKnowledgeFromDB(keywords);
-            // 合并结果，去重
-            for (KnowledgeBase kb : keywordResults) {
-                if (!combinedResults.contains(kb)) {
-                    combinedResults.add(kb);
-                }
-            }
-        }
-        
-        // 4. 更新Redis缓存，使用分布式锁保护
-        for (KnowledgeBase doc : combinedResults) {
-            String lockKey = "knowledge:save:" + doc.getId();
-            String lockValue = distributedLock.tryLock(lockKey, 5, TimeUnit.SECONDS);
-            try {
-                if (lockValue != null) {
-                    // 统一使用saveDocToRedis，它会处理新文档保存和已有文档的更新
-                    redisService.saveDocToRedis(doc);
-                }
-            } finally {
-                if (lockValue != null) {
-                    distributedLock.unlock(lockKey, lockValue);
-                }
-            }
-        }
-        
-        return combinedResults;
-    }
-
-    // 构建文档上下文
-    private StringBuilder buildContextFromDocs(List<KnowledgeBase> relevantDocs) {
-        StringBuilder contextBuilder = new StringBuilder();
-        if (!relevantDocs.isEmpty()) {
-            contextBuilder.append("结合以下知识库内容回答：\n");
-            for (KnowledgeBase doc : relevantDocs) {
-                contextBuilder.append("标题：").append(doc.getTitle()).append("\n");
-                contextBuilder.append("内容：").append(doc.getContent()).append("\n\n");
-            }
-        }
-        return contextBuilder;
+            Mono<ChatMessage> summary = recent.isEmpty() ? Mono.empty() : chatHistoryCache.getSummary(sessionId, userId);
+            return summary
+                    .map(latest -> {
+                        List<ChatMessage> history = new ArrayList<>(recent.size() + 1);
+                        history.add(latest);
+                        for (ChatMessage message : recent) {
+                            if (message.getCreatedAt().isAfter(latest.getCreatedAt())) {
+                                history.add(message);
+                            }
+                        }
+                        if (history.size() - 1 >= historyProperties.getSummaryThreshold()) {
+                            conversationSummarizer.summarizeIfNeeded(sessionId, userId);
+                        }
+                        return history;
+                    })
+                    .switchIfEmpty(Mono.fromSupplier(() -> {
+                        if (recent.size() >= historyProperties.getSummaryThreshold()) {
+                            conversationSummarizer.summarizeIfNeeded(sessionId, userId);
+                        }
+                        return recent;
+                    }));
+        });
     }
 
     @Override
     @Transactional
     public ChatResponse processMessage(ChatRequest request) {
-        ProcessMessageResult result = processMessageCommon(request);
+        ProcessMessageResult result = processMessageCommon(request, getCurrentUserId()).block();
+
+        // 命中语义缓存时直接返回缓存的答案
+        if (result.cacheLookup().hit()) {
+            saveAssistantMessage(result.cacheLookup().answer(), result.sessionId(), result.userId(), false).block();
+            return ChatResponse.builder()
+                    .message(result.cacheLookup().answer())
+                    .sessionId(result.sessionId())
+                    .modelId(result.modelId())
+                    .build();
+        }
 
-        // 调用AI模型
-        String aiResponse = chatClient.prompt()
-                .messages(result.messages())
-                .options(result.options())
-                .call()
-                .content();
+        // 调用AI模型，模型并发已满时排队，队列已满或等待超时时抛出ModelBusyException
+        String aiResponse = modelBulkhead.call(result.modelId(), result.userId(), () -> {
+            boolean coldStart = modelWarmupService.recordRequest(result.modelId());
+            long start = System.nanoTime();
+            String content = chatModelRouter.call(result.modelId(), result.routingKey(), client -> client.prompt()
+                    .messages(result.messages())
+                    .options(result.options())
+                    .call()
+                    .content());
+            if (coldStart) {
+                modelWarmupService.recordColdStartCall(result.modelId(), Duration.ofNanos(System.nanoTime() - start));
+            }
+            return content;
+        });
 
-        // 清理AI响应
-        assert aiResponse != null;
-        String cleanedResponse = cleanAiResponse(aiResponse);
+        // 去除思考过程
+        ThinkBlockFilter thinkFilter = new ThinkBlockFilter();
+        thinkFilter.accept(aiResponse);
+        thinkFilter.finish();
+        String cleanedResponse = cleanAiResponse(thinkFilter.getText());
 
         // 保存AI响应
-        saveAssistantMessage(cleanedResponse, result.sessionId(), result.currentUser());
+        saveAssistantMessage(cleanedResponse, result.sessionId(), result.userId(), false).block();
+        semanticAnswerCache.put(result.cacheLookup(), cleanedResponse);
 
         return ChatResponse.builder()
                 .message(cleanedResponse)
@@ -207,60 +242,152 @@ public class ChatServiceImpl implements ChatService {
     @Override
     @Transactional
     public Flux<ChatResponse> processMessageReactive(ChatRequest request) {
-        return Mono.fromCallable(() -> processMessageCommon(request))
-            .subscribeOn(elasticScheduler)  // Move blocking operation to elastic thread pool
+        // 用户ID在请求线程中从认证信息读取，之后的处理不依赖线程上下文，可以在任意线程上继续
+        Long userId = getCurrentUserId();
+        return processMessageCommon(request, userId)
             .flatMapMany(result -> {
-                StringBuilder fullResponse = new StringBuilder();
-                return chatClient.prompt()
-                        .messages(result.messages())
-                        .options(result.options())
-                        .stream()
-                        .content()
-                        .mapNotNull(chunk -> {
-                            if (!chunk.isEmpty()) {
-                                fullResponse.append(chunk);
-                                return buildChatResponse(chunk, result.sessionId(), result.modelId());
-                            }
-                            return null;
-                        })
-                        .doOnComplete(() -> {
-                            // Move blocking save operation to elastic thread pool
-                            Mono.fromRunnable(() -> 
-                                saveAssistantMessage(cleanAiResponse(fullResponse.toString()), result.sessionId(), result.currentUser())
-                            ).subscribeOn(elasticScheduler).subscribe();
-                        })
-                        .doOnError(error -> {
-                            log.error("Error in streaming response: {}", error.getMessage());
-                        });
+                // 每个回答分配一个ID，客户端断线后凭ID和最后收到的序号续传
+                String messageId = UUID.randomUUID().toString();
+                Flux<ChatResponse> frames = result.cacheLookup().hit()
+                        ? streamCachedAnswer(result, messageId)
+                        : streamGeneratedAnswer(result, messageId);
+                return streamResumeBuffer.record(userId, messageId, frames);
             });
     }
 
+    @Override
+    public Flux<ChatResponse> resumeMessageReactive(String messageId, long lastSequence) {
+        Long userId = getCurrentUserId();
+        return streamResumeBuffer.resume(userId, messageId, lastSequence);
+    }
+
+    private Flux<ChatResponse> streamGeneratedAnswer(ProcessMessageResult result, String messageId) {
+        // 逐个片段去除思考过程，累计的可见文本即为保存的回答
+        ThinkBlockFilter thinkFilter = new ThinkBlockFilter();
+        AtomicLong sequence = new AtomicLong();
+        return streamContent(result)
+                .map(thinkFilter::accept)
+                .concatWith(Mono.fromSupplier(thinkFilter::finish))
+                .filter(chunk -> !chunk.isEmpty())
+                .transform(this::coalesceFrames)
+                .map(chunk -> buildChatResponse(chunk, result.sessionId(), result.modelId(), messageId,
+                        sequence.incrementAndGet()))
+                .doOnComplete(() -> {
+                    String cleanedResponse = cleanAiResponse(thinkFilter.getText());
+                    semanticAnswerCache.put(result.cacheLookup(), cleanedResponse);
+                    saveAssistantMessage(cleanedResponse, result.sessionId(), result.userId(), false)
+                            .subscribe(null, error -> log.error("Failed to save assistant message for session {}",
+                                    result.sessionId(), error));
+                })
+                .doOnCancel(() -> recordCancelled(result, cleanAiResponse(thinkFilter.getText())))
+                .doOnError(error -> {
+                    log.error("Error in streaming response: {}", error.getMessage());
+                });
+    }
+
+    // 保存的回答沿用原先的清理规则：思考块已由ThinkBlockFilter去除，这里再去除HTML标签并合并连续空白
+    private static String cleanAiResponse(String visibleText) {
+        String cleaned = HTML_TAG.matcher(visibleText).replaceAll("");
+        return WHITESPACE.matcher(cleaned).replaceAll(" ").trim();
+    }
+
+    // 调用模型获取流式输出，启用合并时相同的并发提问共用一次调用，只占用一个并发许可
+    private Flux<String> streamContent(ProcessMessageResult result) {
+        Supplier<Flux<String>> generation = () -> modelBulkhead.stream(result.modelId(), result.userId(),
+                () -> trackColdStart(result.modelId(),
+                        chatModelRouter.stream(result.modelId(), result.routingKey(), client -> client.prompt()
+                                .messages(result.messages())
+                                .options(result.options())
+                                .stream()
+                                .content())));
+        if (result.coalescingKey() == null) {
+            return generation.get();
+        }
+        return chatRequestCoalescer.coalesce(result.coalescingKey(), generation);
+    }
+
+    // 客户端断开后取消的生成：已生成的部分标记为截断后保存，不写入答案缓存
+    private void recordCancelled(ProcessMessageResult result, String partialResponse) {
+        Counter.builder("chatbot.chat.cancelled")
+                .tag("model", result.modelId())
+                .description("Streamed generations cancelled because the client disconnected")
+                .register(meterRegistry)
+                .increment();
+        log.info("Generation for session {} cancelled after {} characters", result.sessionId(), partialResponse.length());
+        if (partialResponse.isEmpty()) {
+            return;
+        }
+        saveAssistantMessage(partialResponse, result.sessionId(), result.userId(), true)
+                .subscribe(null, error -> log.error("Failed to save truncated assistant message for session {}",
+                        result.sessionId(), error));
+    }
+
+    // 把模型逐个输出的片段合并为按字节数或等待时间划分的帧，减少SSE帧的数量
+    private Flux<String> coalesceFrames(Flux<String> chunks) {
+        return SseFrameCoalescer.coalesce(chunks, streamProperties.getFrameMaxBytes(),
+                Duration.ofMillis(streamProperties.getFrameMaxDelayMilliseconds()));
+    }
+
+    // 模型未加载时记录从发出请求到收到首个输出的耗时
+    private Flux<String> trackColdStart(String modelId, Flux<String> content) {
+        return Flux.defer(() -> {
+            if (!modelWarmupService.recordRequest(modelId)) {
+                return content;
+            }
+            long start = System.nanoTime();
+            AtomicBoolean firstChunk = new AtomicBoolean(true);
+            return content.doOnNext(chunk -> {
+                if (firstChunk.compareAndSet(true, false)) {
+                    modelWarmupService.recordColdStart(modelId, Duration.ofNanos(System.nanoTime() - start));
+                }
+            });
+        });
+    }
+
+    // 将缓存的答案按固定长度分片，以与模型流式输出相同的格式返回
+    private Flux<ChatResponse> streamCachedAnswer(ProcessMessageResult result, String messageId) {
+        String answer = result.cacheLookup().answer();
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < answer.length(); i += CACHED_ANSWER_CHUNK_SIZE) {
+            chunks.add(answer.substring(i, Math.min(answer.length(), i + CACHED_ANSWER_CHUNK_SIZE)));
+        }
+        AtomicLong sequence = new AtomicLong();
+        return Flux.fromIterable(chunks)
+                .map(chunk -> buildChatResponse(chunk, result.sessionId(), result.modelId(), messageId,
+                        sequence.incrementAndGet()))
+                .doOnComplete(() -> saveAssistantMessage(answer, result.sessionId(), result.userId(), false)
+                        .subscribe(null, error ->
+                                log.error("Failed to save assistant message for session {}", result.sessionId(), error)));
+    }
+
     // 记录处理结果的数据类
     private record ProcessMessageResult(
         List<Message> messages,
         ChatOptions options,
         String sessionId,
         String modelId,
-        User currentUser
-    ) {}
+        Long userId,
+        SemanticAnswerCache.Lookup cacheLookup,
+        String coalescingKey
+    ) {
+        // 同一会话的请求固定到同一模型节点，复用节点上的提示词前缀
+        String routingKey() {
+            return userId + ":" + sessionId;
+        }
+    }
 
-    private ChatResponse buildChatResponse(String message, String sessionId, String modelId) {
+    // 序号在单个流内从1开始递增，前端据此对重复解析的帧去重
+    private ChatResponse buildChatResponse(String message, String sessionId, String modelId, String messageId,
+                                           long sequence) {
         return ChatResponse.builder()
                 .message(message)
                 .sessionId(sessionId)
                 .modelId(modelId)
-                .sequence(UUID.randomUUID().toString())
+                .messageId(messageId)
+                .sequence(sequence)
                 .build();
     }
 
-    private List<KnowledgeBase> searchKnowledgeFromDB(List<String> keywords) {
-        if(keywords == null || keywords.isEmpty()){
-            return Collections.emptyList();
-        }
-        // Use knowledgeService to search by keywords
-        return knowledgeService.search(String.join(" ", keywords), 0, 10).getContent();
-    }
-
     private String getOrCreateSessionId(String sessionId) {
         if (sessionId == null || sessionId.isEmpty()) {
             return UUID.randomUUID().toString();
@@ -268,98 +395,58 @@ public class ChatServiceImpl implements ChatService {
         return sessionId;
     }
 
-    private void saveUserMessage(String content, String sessionId, User user) {
+    private Mono<Void> saveUserMessage(String content, String sessionId, Long userId) {
         ChatMessage userMessage = new ChatMessage();
         userMessage.setContent(content);
         userMessage.setRole("user");
         userMessage.setSessionId(sessionId);
-        userMessage.setUserId(user.getId());
-        chatMessageMapper.insert(userMessage);
+        userMessage.setUserId(userId);
+        return chatMessageWriter.enqueueAsync(userMessage).then(chatHistoryCache.append(userMessage));
     }
 
-    private void saveAssistantMessage(String content, String sessionId, User user) {
+    private Mono<Void> saveAssistantMessage(String content, String sessionId, Long userId, boolean truncated) {
         ChatMessage assistantMessage = new ChatMessage();
         assistantMessage.setContent(content);
         assistantMessage.setRole("assistant");
         assistantMessage.setSessionId(sessionId);
-        assistantMessage.setUserId(user.getId());
-        chatMessageMapper.insert(assistantMessage);
-    }
-
-    private List<Message> buildMessageContext(String sessionId) {
-        return Mono.fromCallable(() -> {
-            // 获取最近的10条消息
-            List<ChatMessage> history = chatMessageMapper.findLast10BySessionIdAndUserIdOrderByCreatedAtDesc(sessionId, getCurrentUser().getId());
-            // 反转列表以保持时间顺序
-            Collections.reverse(history);
-
-            // 构建对话上下文
-            List<Message> messages = new ArrayList<>();
-            
-            String systemPrompt = """
-                你是一个智能助手，名字叫强哥。请严格遵守以下规则：
-                1.**输出要求**：所有回答（包括流式输出）必须直接给出最终答案，完全省略思考过程、推理步骤或解释性文字。
-                2.**知识库优先级**：当用户提供本地知识库内容（通过UserMessage传递）时，必须优先分析知识库内容并结合自身知识库给出回答。
-            """;
-            messages.add(new SystemMessage(systemPrompt));
-            // 添加历史消息
-            for (ChatMessage msg : history) {
-                if ("user".equals(msg.getRole())) {
-                    messages.add(new UserMessage(msg.getContent()));
-                } else {
-                    messages.add(new AssistantMessage(msg.getContent()));
-                }
-            }
-
-            return messages;
-        }).subscribeOn(elasticScheduler).block();  // Execute blocking DB operation on elastic thread pool
-    }
-
-    private String cleanAiResponse(String response) {
-        if (response == null) {
-            return "";
-        }
-        
-        // 1. 移除think块及其之前的所有内容
-        String cleaned = response.replaceAll("(?s).*?</think>\\s*", "");
-        
-        // 2. 移除其他HTML标签
-        cleaned = cleaned.replaceAll("<[^>]+>", "");
-        
-        // 3. 清理空白字符
-        cleaned = cleaned.replaceAll("\\s+", " ").trim();
-        
-        return cleaned;
+        assistantMessage.setUserId(userId);
+        assistantMessage.setTruncated(truncated);
+        return chatMessageWriter.enqueueAsync(assistantMessage).then(chatHistoryCache.append(assistantMessage));
     }
 
     @Override
     public List<ChatResponse> getHistory(String sessionId) {
-        User currentUser = getCurrentUser();
-        List<ChatMessage> messages = chatMessageMapper.findBySessionIdAndUserIdOrderByCreatedAtAsc(sessionId, currentUser.getId());
+        Long userId = getCurrentUserId();
+        List<ChatMessage> messages = chatMessageMapper.findBySessionIdAndUserIdOrderByCreatedAtAsc(sessionId, userId);
         return messages.stream()
                 .map(msg -> ChatResponse.builder()
                         .message(msg.getContent())
                         .sessionId(msg.getSessionId())
                         .role(msg.getRole())
+                        .truncated(msg.getTruncated())
                         .build())
                 .collect(Collectors.toList());
     }
 
     @Override
     public List<String> getAllSessions() {
-        User currentUser = getCurrentUser();
-        return chatMessageMapper.findDistinctSessionIdByUserId(currentUser.getId());
+        Long userId = getCurrentUserId();
+        return chatMessageMapper.findDistinctSessionIdByUserId(userId);
     }
 
     @Override
     @Transactional
     public void deleteSession(String sessionId) {
-        User currentUser = getCurrentUser();
+        Long userId = getCurrentUserId();
         String lockKey = "chat:delete:" + sessionId;
         String lockValue = distributedLock.tryLock(lockKey, 10, TimeUnit.SECONDS);
         try {
             if (lockValue != null) {
-                chatMessageMapper.deleteBySessionIdAndUserId(sessionId, currentUser.getId());
+                // 先写入队列中尚未落库的消息，避免删除后又被写回
+                chatMessageWriter.flush();
+                chatMessageMapper.deleteBySessionIdAndUserId(sessionId, userId);
+                chatHistoryCache.evict(sessionId, userId);
+                promptPrefixTracker.remove(sessionId, userId);
             }
         } finally {
             if (lockValue != null) {
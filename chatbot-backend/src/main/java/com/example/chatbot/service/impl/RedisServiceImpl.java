@@ -6,9 +6,12 @@ import com.example.chatbot.util.KeywordExtractor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
 import org.springframework.data.redis.core.*;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -18,6 +21,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RedisServiceImpl implements RedisService {
     private final RedisTemplate<String, Object> redisTemplate;
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
     private final KeywordExtractor keywordExtractor;
     private static final String HOT_KNOWLEDGE_KEY = "hot_knowledge";
     private static final String KNOWLEDGE_DATA_KEY = "knowledge_data:";
@@ -73,6 +77,79 @@ public class RedisServiceImpl implements RedisService {
         }
     }
 
+    @Override
+    public void saveDocsToRedis(List<KnowledgeBase> docs, Map<Long, Integer> hits) {
+        if (docs.isEmpty()) {
+            return;
+        }
+
+        // 1. 一次管道读取所有文档的热度分数和已缓存的知识数据
+        List<Object> cached = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <K, V> Object execute(@NonNull RedisOperations<K, V> operations) throws DataAccessException {
+                for (KnowledgeBase doc : docs) {
+                    String docId = doc.getId().toString();
+                    operations.opsForZSet().score((K) HOT_KNOWLEDGE_KEY, docId);
+                    operations.opsForValue().get((K) (KNOWLEDGE_DATA_KEY + docId));
+                }
+                return null;
+            }
+        });
+
+        // 2. 为新文档腾出热知识集合的空间，一次性移除分数最低的条目
+        long newDocCount = 0;
+        List<Boolean> contentChanged = new ArrayList<>(docs.size());
+        for (int i = 0; i < docs.size(); i++) {
+            if (cached.get(2 * i) == null) {
+                newDocCount++;
+            }
+            KnowledgeBase existingKnowledge = (KnowledgeBase) cached.get(2 * i + 1);
+            contentChanged.add(isContentChanged(existingKnowledge, docs.get(i)));
+        }
+        if (newDocCount > 0) {
+            Long currentSize = redisTemplate.opsForZSet().size(HOT_KNOWLEDGE_KEY);
+            long overflow = (currentSize == null ? 0 : currentSize) + newDocCount - MAX_HOT_KNOWLEDGE_NUMBER;
+            if (overflow > 0) {
+                redisTemplate.opsForZSet().removeRange(HOT_KNOWLEDGE_KEY, 0, overflow - 1);
+            }
+        }
+
+        // 3. 关键词提取是CPU操作，在进入管道前完成
+        Map<Long, Set<String>> keywordsByDoc = new HashMap<>();
+        for (int i = 0; i < docs.size(); i++) {
+            if (contentChanged.get(i)) {
+                KnowledgeBase doc = docs.get(i);
+                keywordsByDoc.put(doc.getId(), extractKeywords(doc.getTitle() + " " + doc.getContent()));
+            }
+        }
+
+        // 4. 一次管道写入热度分数、知识数据和关键词索引
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <K, V> Object execute(@NonNull RedisOperations<K, V> operations) throws DataAccessException {
+                for (int i = 0; i < docs.size(); i++) {
+                    KnowledgeBase doc = docs.get(i);
+                    String docId = doc.getId().toString();
+                    String knowledgeKey = KNOWLEDGE_DATA_KEY + docId;
+                    operations.opsForZSet().incrementScore((K) HOT_KNOWLEDGE_KEY, (V) docId,
+                            hits.getOrDefault(doc.getId(), 1));
+                    if (contentChanged.get(i)) {
+                        operations.opsForValue().set((K) knowledgeKey, (V) doc,
+                                java.time.Duration.ofDays(DEFAULT_EXPIRATION_DAYS));
+                        for (String keyword : keywordsByDoc.get(doc.getId())) {
+                            operations.opsForSet().add((K) (KEYWORD_INDEX_KEY + keyword.toLowerCase()), (V) docId);
+                        }
+                    } else {
+                        operations.expire((K) knowledgeKey, java.time.Duration.ofDays(DEFAULT_EXPIRATION_DAYS));
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
     /**
      * 检查知识内容是否发生变化
      * @param existingKnowledge 已存在的知识
@@ -157,23 +234,64 @@ public class RedisServiceImpl implements RedisService {
                     return (KnowledgeBase) redisTemplate.opsForValue().get(KNOWLEDGE_DATA_KEY + id);
                 })
                 .filter(Objects::nonNull)
-                .filter(knowledge -> {
-                    if (searchTerms == null || searchTerms.isEmpty()) {
-                        return true;
-                    }
-                    String title = knowledge.getTitle().toLowerCase();
-                    String content = knowledge.getContent().toLowerCase();
-                    String category = knowledge.getCategory().toLowerCase();
-                    
-                    // 检查是否包含任意一个搜索词
-                    return searchTerms.stream()
-                            .anyMatch(term -> title.contains(term.toLowerCase()) || 
-                                           content.contains(term.toLowerCase()) || 
-                                           category.contains(term.toLowerCase()));
-                })
+                .filter(knowledge -> matchesAny(knowledge, searchTerms))
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Mono<List<KnowledgeBase>> searchKnowledgeReactive(List<String> keywords) {
+        if (keywords == null || keywords.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+
+        // 1. 并发读取各关键词的索引
+        return Flux.fromIterable(keywords)
+                .flatMap(keyword -> reactiveRedisTemplate.opsForSet().members(KEYWORD_INDEX_KEY + keyword.toLowerCase()))
+                .map(Object::toString)
+                .collect(Collectors.toSet())
+                .flatMap(matchedDocIds -> {
+                    // 2. 如果找到匹配的文档，一次读取全部文档数据
+                    if (!matchedDocIds.isEmpty()) {
+                        return multiGetKnowledge(matchedDocIds.stream().toList());
+                    }
+                    // 3. 如果没有找到匹配的文档，返回包含搜索词的热门知识
+                    return reactiveRedisTemplate.opsForZSet()
+                            .reverseRange(HOT_KNOWLEDGE_KEY, Range.unbounded())
+                            .map(Object::toString)
+                            .collectList()
+                            .flatMap(this::multiGetKnowledge)
+                            .map(hot -> hot.stream()
+                                    .filter(knowledge -> matchesAny(knowledge, keywords))
+                                    .collect(Collectors.toList()));
+                });
+    }
+
+    private Mono<List<KnowledgeBase>> multiGetKnowledge(List<String> docIds) {
+        if (docIds.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+        List<String> keys = docIds.stream().map(docId -> KNOWLEDGE_DATA_KEY + docId).toList();
+        return reactiveRedisTemplate.opsForValue().multiGet(keys)
+                .map(values -> values.stream()
+                        .filter(KnowledgeBase.class::isInstance)
+                        .map(KnowledgeBase.class::cast)
+                        .collect(Collectors.toList()));
+    }
+
+    // 检查是否包含任意一个搜索词
+    private boolean matchesAny(KnowledgeBase knowledge, List<String> searchTerms) {
+        if (searchTerms == null || searchTerms.isEmpty()) {
+            return true;
+        }
+        String title = knowledge.getTitle().toLowerCase();
+        String content = knowledge.getContent().toLowerCase();
+        String category = knowledge.getCategory().toLowerCase();
+        return searchTerms.stream()
+                .anyMatch(term -> title.contains(term.toLowerCase()) || 
+                               content.contains(term.toLowerCase()) || 
+                               category.contains(term.toLowerCase()));
+    }
+
     @Override
     public void removeExpiredHotKnowledge() {
         // 获取所有热门知识及其分数
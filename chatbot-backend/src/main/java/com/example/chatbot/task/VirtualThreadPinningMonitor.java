@@ -0,0 +1,85 @@
+package com.example.chatbot.task;
+
+import com.example.chatbot.config.ThreadPoolConfig;
+import com.example.chatbot.properties.ThreadPoolProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 虚拟线程固定诊断
+ *
+ * 使用虚拟线程时，在synchronized块或本地方法中阻塞会把虚拟线程固定在载体线程上，载体线程无法执行其他虚拟线程。
+ * 这里通过JFR的jdk.VirtualThreadPinned事件监听超过阈值的固定，记录调用栈并计入chatbot.virtual.thread.pinned指标，
+ * 便于找出需要改用ReentrantLock的代码。未使用虚拟线程时不启动。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VirtualThreadPinningMonitor {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_LOGGED_FRAMES = 12;
+
+    private final ThreadPoolProperties threadPoolProperties;
+    private final MeterRegistry meterRegistry;
+
+    private RecordingStream recordingStream;
+
+    @PostConstruct
+    public void start() {
+        if (!ThreadPoolConfig.useVirtualThreads(threadPoolProperties)) {
+            return;
+        }
+        Counter pinnedCounter = Counter.builder("chatbot.virtual.thread.pinned")
+                .description("Virtual threads pinned to their carrier longer than the configured threshold")
+                .register(meterRegistry);
+
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT)
+                .withThreshold(Duration.ofMillis(threadPoolProperties.getPinnedThresholdMilliseconds()))
+                .withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, event -> {
+            pinnedCounter.increment();
+            log.warn("Virtual thread pinned for {} ms on {}:\n{}", event.getDuration().toMillis(),
+                    event.getThread() != null ? event.getThread().getJavaName() : "unknown thread", format(event));
+        });
+        recordingStream.startAsync();
+        log.info("Monitoring virtual thread pinning longer than {} ms", threadPoolProperties.getPinnedThresholdMilliseconds());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    private String format(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "\t(no stack trace)";
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < Math.min(frames.size(), MAX_LOGGED_FRAMES); i++) {
+            RecordedFrame frame = frames.get(i);
+            builder.append("\tat ")
+                    .append(frame.getMethod().getType().getName()).append('.')
+                    .append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber()).append('\n');
+        }
+        if (frames.size() > MAX_LOGGED_FRAMES) {
+            builder.append("\t... ").append(frames.size() - MAX_LOGGED_FRAMES).append(" more\n");
+        }
+        return builder.toString();
+    }
+}
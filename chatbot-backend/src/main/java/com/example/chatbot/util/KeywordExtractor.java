@@ -1,40 +1,85 @@
 package com.example.chatbot.util;
 
 import com.example.chatbot.properties.KeywordExtractorProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.hankcs.hanlp.HanLP;
 import com.hankcs.hanlp.corpus.tag.Nature;
 import com.hankcs.hanlp.dictionary.CustomDictionary;
 import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
-import com.hankcs.hanlp.seg.Segment;
 import com.hankcs.hanlp.seg.common.Term;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+/**
+ * 关键词提取
+ *
+ * 提取结果按文本和关键词数量缓存。缓存按文本和关键词的总字符数限制容量，超出时按W-TinyLFU策略淘汰：
+ * 只有访问频率高于待淘汰条目的新条目才会被接纳，一次性的长文本不会挤掉高频的短问题。
+ * 缓存的命中、未命中和淘汰情况通过keyword.extractor缓存指标暴露。
+ * 配置的常用短语和停用词在启动时编译为TermDictionary，分词结果的每个词只查询一次。
+ * 分词器不在线程间共享，并发请求从SegmenterPool中各自借用一个分词器。
+ * 长文章的各段落在独立的ForkJoinPool中并行提取，不占用公共线程池。
+ */
 @Slf4j
 @Component
-public class KeywordExtractor {
+public class KeywordExtractor implements MeterBinder {
+    private static final String CACHE_NAME = "keyword.extractor";
+
     private final KeywordExtractorProperties properties;
-    private final Segment segment;
-    private final Map<String, CacheEntry> keywordCache;
-    private static final int MAX_CACHE_SIZE = 1000;
-    private static final long CACHE_EXPIRY_MS = 3600000; // 1 hour
+    private final SegmenterPool segmenterPool;
+    private final Cache<CacheKey, List<String>> keywordCache;
+    private final TermDictionary termDictionary;
+    private final ForkJoinPool articlePool;
     private static boolean dictionaryInitialized = false;
     private static final Object lock = new Object();
 
     public KeywordExtractor(KeywordExtractorProperties properties) {
         this.properties = properties;
-        this.segment = new DijkstraSegment();
-        this.keywordCache = new ConcurrentHashMap<>(MAX_CACHE_SIZE);
+        this.segmenterPool = new SegmenterPool(properties.getSegmenterPoolSize(), DijkstraSegment::new);
+        this.keywordCache = Caffeine.newBuilder()
+                .maximumWeight(properties.getCacheMaximumWeight())
+                .weigher(KeywordExtractor::weigh)
+                .expireAfterWrite(Duration.ofMinutes(properties.getCacheExpireAfterWriteMinutes()))
+                .recordStats()
+                .build();
+        this.articlePool = new ForkJoinPool(parallelism(properties.getArticleParallelism()),
+                KeywordExtractor::articleWorker, null, false);
+        // 常用短语和停用词编译为Trie，其余的词再查询HanLP的自定义词典（自带词库和运行时加入的词）
+        this.termDictionary = TermDictionary.compile(properties.getCommonPhrases(), properties.getStopWords(),
+                CustomDictionary::contains);
         initializeDictionary();
     }
 
+    private static int parallelism(int configured) {
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static ForkJoinWorkerThread articleWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("keyword-article-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, keywordCache, CACHE_NAME);
+    }
+
     private void initializeDictionary() {
         synchronized (lock) {
             if (!dictionaryInitialized) {
@@ -64,44 +109,42 @@ public class KeywordExtractor {
      * @return 关键词列表
      */
     public List<String> extractKeywords(String text, int maxKeywords) {
-        String cacheKey = text + maxKeywords;
-        CacheEntry cacheEntry = keywordCache.get(cacheKey);
-
-        if (cacheEntry != null && !cacheEntry.isExpired()) {
-            return cacheEntry.keywords;
-        }
-
         if (text == null || text.trim().isEmpty()) {
             return List.of();
         }
+        return keywordCache.get(new CacheKey(text, maxKeywords), key -> computeKeywords(key.text(), key.maxKeywords()));
+    }
 
+    private List<String> computeKeywords(String text, int maxKeywords) {
         // 1. 分词
-        List<Term> terms = segment.seg(text);
+        List<Term> terms = segmenterPool.seg(text);
 
         // 2. 处理分词结果，组合有意义的词组
         List<String> phrases = processTerms(terms);
 
         // 3. 提取关键词并过滤短词
-        List<String> keywords = extractKeywordsFromPhrases(phrases, maxKeywords);
-        keywordCache.put(cacheKey, new CacheEntry(keywords));
-        return keywords;
+        return List.copyOf(extractKeywordsFromPhrases(phrases, maxKeywords));
     }
 
     private List<String> processTerms(List<Term> terms) {
         List<String> phrases = new ArrayList<>();
-        
+
+        // 每个词的分类只查询一次，判断下一个词时得到的结果留给下一轮使用
+        int nextFlags = classify(terms, 0);
         for (int i = 0; i < terms.size(); i++) {
             Term term = terms.get(i);
             String word = term.word;
             Nature nature = term.nature;
+            int flags = nextFlags;
+            nextFlags = classify(terms, i + 1);
     
             // 跳过停止词和标点符号
-            if (isStopWord(word) || nature == Nature.w) {
+            if (flags == TermDictionary.STOP_WORD || nature == Nature.w) {
                 continue;
             }
     
             // 处理专有名词和自定义词典中的词
-            if (nature == Nature.nz || nature == Nature.gi || CustomDictionary.contains(word)) {
+            if (nature == Nature.nz || nature == Nature.gi || flags == TermDictionary.PHRASE) {
                 phrases.add(word);
                 continue;
             }
@@ -109,12 +152,13 @@ public class KeywordExtractor {
             // 尝试与下一个词组合
             if (i < terms.size() - 1) {
                 Term nextTerm = terms.get(i + 1);
-                if (!isStopWord(nextTerm.word) && nextTerm.nature != Nature.w) {
+                if (nextFlags != TermDictionary.STOP_WORD && nextTerm.nature != Nature.w) {
                     // 检查当前词和下一个词是否可以组合
                     if (canCombine(nature, nextTerm.nature)) {
                         String combined = word + nextTerm.word;
                         phrases.add(combined);
                         i++; // 跳过下一个词
+                        nextFlags = classify(terms, i + 1);
                         continue;
                     }
                 }
@@ -129,9 +173,8 @@ public class KeywordExtractor {
         return phrases;
     }
 
-    private boolean isStopWord(String word) {
-        return CustomDictionary.contains(word) &&
-                CustomDictionary.get(word).toString().contains("x");
+    private int classify(List<Term> terms, int index) {
+        return index < terms.size() ? termDictionary.classify(terms.get(index).word) : TermDictionary.NONE;
     }
 
     private boolean canCombine(Nature currentNature, Nature nextNature) {
@@ -178,32 +221,8 @@ public class KeywordExtractor {
             // 使用HanLP的TextRank算法对原始词组进行排序
             List<String> rankedPhrases = HanLP.extractKeyword(text, maxKeywords * 3);
             
-            // 从原始词组中筛选出在rankedPhrases中出现的关键词
-            return phrases.stream()
-                .filter(phrase -> phrase.length() >= 2) // 过滤掉单字词
-                .filter(phrase -> {
-                    // 检查词组是否在rankedPhrases中或其子串中
-                    return rankedPhrases.stream()
-                        .anyMatch(ranked -> ranked.contains(phrase) || phrase.contains(ranked));
-                })
-                .sorted((a, b) -> {
-                    // 首先按长度降序排序
-                    int lengthCompare = Integer.compare(b.length(), a.length());
-                    if (lengthCompare != 0) {
-                        return lengthCompare;
-                    }
-                    // 长度相同时，按在rankedPhrases中的位置排序
-                    int aIndex = rankedPhrases.indexOf(a);
-                    int bIndex = rankedPhrases.indexOf(b);
-                    if (aIndex != -1 && bIndex != -1) {
-                        return Integer.compare(aIndex, bIndex);
-                    }
-                    // 如果不在rankedPhrases中，按在文本中的位置排序
-                    return Integer.compare(text.indexOf(a), text.indexOf(b));
-                })
-                .filter(phrase -> phrase.length() > properties.getMinWordLength())
-                .limit(maxKeywords)
-                .collect(Collectors.toList());
+            // 从原始词组中筛选出与rankedPhrases互为子串的关键词，按长度和排名排序
+            return PhraseRanking.select(phrases, text, rankedPhrases, properties.getMinWordLength(), maxKeywords);
                 
         } catch (Exception e) {
             log.error("Error extracting keywords", e);
@@ -221,63 +240,89 @@ public class KeywordExtractor {
         return extractKeywords(text, properties.getDefaultKeywordCount());
     }
 
+    /**
+     * 提取文章的关键词，标题（第一段）中的关键词权重为5，正文中的为1，按总权重从高到低返回
+     *
+     * 文章长度达到articleParallelThreshold时各段落在有界的ForkJoinPool中并行提取，权重合并到并发的累加表中。
+     * 权重相同的关键词按第一次出现的段落和在该段落中的名次排序，结果与串行处理相同。
+     *
+     * @param article     文章，段落之间以空行分隔
+     * @param maxKeywords 最大关键词数量
+     * @return 关键词列表
+     */
     public List<String> extractKeywordsFromArticle(String article, int maxKeywords) {
         String[] paragraphs = article.split("\n\n"); // 按段落分割
-        Map<String, Double> keywordWeights = new HashMap<>();
-
-        // 处理标题（第一段）
-        if (paragraphs.length > 0) {
-            List<String> titleKeywords = extractKeywords(paragraphs[0], maxKeywords);
-            for (String keyword : titleKeywords) {
-                keywordWeights.merge(keyword, 5.0, Double::sum); // 标题权重为5
-            }
-        }
+        Map<String, KeywordWeight> keywordWeights = new ConcurrentHashMap<>();
 
-        // 处理正文
-        for (int i = 1; i < paragraphs.length; i++) {
-            List<String> bodyKeywords = extractKeywords(paragraphs[i], maxKeywords);
-            for (String keyword : bodyKeywords) {
-                keywordWeights.merge(keyword, 1.0, Double::sum); // 正文权重为1
-            }
+        IntStream indexes = IntStream.range(0, paragraphs.length);
+        if (isParallelArticle(article, paragraphs.length)) {
+            articlePool.submit(() -> indexes.parallel()
+                    .forEach(i -> accumulate(keywordWeights, paragraphs[i], i, maxKeywords)))
+                    .join();
+        } else {
+            indexes.forEach(i -> accumulate(keywordWeights, paragraphs[i], i, maxKeywords));
         }
 
         // 按权重排序并返回前N个关键词
         return keywordWeights.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .sorted(Map.Entry.comparingByValue())
                 .limit(maxKeywords)
                 .map(Map.Entry::getKey)
                 .collect(Collectors.toList());
     }
 
-    // 缓存条目类，用于存储关键词和过期时间
-    private static class CacheEntry {
-        private final List<String> keywords;
-        private final long timestamp;
+    private boolean isParallelArticle(String article, int paragraphCount) {
+        int threshold = properties.getArticleParallelThreshold();
+        return threshold > 0 && paragraphCount > 1 && article.length() >= threshold;
+    }
 
-        public CacheEntry(List<String> keywords) {
-            this.keywords = keywords;
-            this.timestamp = System.currentTimeMillis();
+    private void accumulate(Map<String, KeywordWeight> keywordWeights, String paragraph, int index, int maxKeywords) {
+        // 标题权重为5，正文权重为1
+        double weight = index == 0 ? 5.0 : 1.0;
+        List<String> keywords = extractKeywords(paragraph, maxKeywords);
+        for (int rank = 0; rank < keywords.size(); rank++) {
+            long order = (long) index * maxKeywords + rank;
+            keywordWeights.merge(keywords.get(rank), new KeywordWeight(weight, order), KeywordWeight::plus);
         }
+    }
 
-        public boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > CACHE_EXPIRY_MS;
+    /**
+     * 关闭并行处理文章使用的线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        articlePool.shutdown();
+    }
+
+    // 关键词的累计权重和第一次出现的位置；权重都是整数，累加顺序不影响结果
+    private record KeywordWeight(double weight, long order) implements Comparable<KeywordWeight> {
+        KeywordWeight plus(KeywordWeight other) {
+            return new KeywordWeight(weight + other.weight, Math.min(order, other.order));
+        }
+
+        @Override
+        public int compareTo(KeywordWeight other) {
+            int byWeight = Double.compare(other.weight, weight);
+            return byWeight != 0 ? byWeight : Long.compare(order, other.order);
+        }
+    }
+
+    // 缓存键，文本和关键词数量分开保存，避免拼接后产生歧义
+    private record CacheKey(String text, int maxKeywords) {
+    }
+
+    private static int weigh(CacheKey key, List<String> keywords) {
+        int weight = key.text().length();
+        for (String keyword : keywords) {
+            weight += keyword.length();
         }
+        return weight;
     }
 
     /**
-     * 清理过期的缓存条目并确保缓存不超过最大大小
+     * 立即执行缓存的维护工作；过期和淘汰在读写时已自动进行，这里只是及时释放已过期条目占用的内存
      */
     public void cleanupKeywordCache() {
-        // 移除过期数据
-        keywordCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
-
-        // 确保缓存不超过最大大小
-        while (keywordCache.size() > MAX_CACHE_SIZE) {
-            java.util.Iterator<java.util.Map.Entry<String, CacheEntry>> iterator = keywordCache.entrySet().iterator();
-            if (iterator.hasNext()) {
-                iterator.next();
-                iterator.remove();
-            }
-        }
+        keywordCache.cleanUp();
     }
 }
\ No newline at end of file
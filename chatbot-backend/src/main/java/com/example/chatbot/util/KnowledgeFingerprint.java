@@ -0,0 +1,36 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 知识库文档指纹工具
+ *
+ * 以文档ID排序后的ID、更新时间、标题和内容计算摘要，检索到的文档集合或任一文档内容变化时指纹随之变化。
+ */
+public final class KnowledgeFingerprint {
+
+    private KnowledgeFingerprint() {
+    }
+
+    /**
+     * 计算一组文档的指纹
+     *
+     * @param docs 知识库文档
+     * @return 十六进制的MD5摘要
+     */
+    public static String of(List<KnowledgeBase> docs) {
+        StringBuilder builder = new StringBuilder();
+        docs.stream()
+                .sorted(Comparator.comparing(KnowledgeBase::getId))
+                .forEach(doc -> builder.append(doc.getId()).append('|')
+                        .append(doc.getUpdatedAt()).append('|')
+                        .append(doc.getTitle()).append('|')
+                        .append(doc.getContent()).append('\n'));
+        return DigestUtils.md5DigestAsHex(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.chatbot.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * 按TextRank排名筛选和排序词组
+ *
+ * 词组与某个排名关键词互为子串时保留。排名关键词编译为广义后缀自动机，判断词组是否为某个关键词的子串
+ * 只需沿转移走一遍词组；判断词组是否包含某个关键词时按最长匹配在自动机上滑动，
+ * 当前匹配的后缀中有完整关键词即为包含。每个不同的词组只匹配一次，
+ * 排名下标和在文本中第一次出现的位置也只计算一次，排序时不再重复查找。
+ * 自动机每次提取都要重新构建，词组和关键词较少时（如一条聊天问题）构建的开销超过逐对比较，
+ * 此时直接逐对比较子串；按15个关键词实测，约60个不同词组以上时自动机更快。
+ * 非线程安全，每次提取单独创建。
+ */
+public final class PhraseRanking {
+    private static final int NO_WORD = Integer.MAX_VALUE;
+    // 词组数与关键词数的乘积不超过该值时逐对比较
+    static final int PAIRWISE_MAX_COMPARISONS = 1024;
+
+    private final Map<String, Integer> ranks = new HashMap<>();
+    private final List<Map<Character, Integer>> next = new ArrayList<>();
+    private int[] link = new int[16];
+    private int[] length = new int[16];
+    // 以该状态结束的最短完整关键词长度，以及后缀链接上的祖先状态中是否有完整关键词
+    private int[] shortestWord;
+    private boolean[] wordOnLink;
+
+    /**
+     * @param rankedPhrases 按排名从高到低排列的关键词
+     */
+    public PhraseRanking(List<String> rankedPhrases) {
+        newState(0);
+        link[0] = -1;
+        indexRanks(rankedPhrases, ranks);
+        List<Integer> wordStates = new ArrayList<>(rankedPhrases.size());
+        for (String phrase : rankedPhrases) {
+            int last = 0;
+            for (int i = 0; i < phrase.length(); i++) {
+                last = extend(last, phrase.charAt(i));
+            }
+            wordStates.add(last);
+        }
+        markWords(rankedPhrases, wordStates);
+    }
+
+    /**
+     * 筛选与排名关键词互为子串的词组，按长度降序排列；长度相同时在排名中的排在前面并按排名排列，
+     * 不在排名中的按在文本中第一次出现的位置排列
+     *
+     * @param phrases       分词后组合的词组，可以重复
+     * @param text          词组以空格拼接的文本
+     * @param rankedPhrases 按排名从高到低排列的关键词
+     * @param minLength     返回的关键词长度需大于该值
+     * @param maxKeywords   最大关键词数量
+     * @return 关键词列表
+     */
+    public static List<String> select(List<String> phrases, String text, List<String> rankedPhrases,
+                                      int minLength, int maxKeywords) {
+        return select(phrases, text, rankedPhrases, minLength, maxKeywords, PAIRWISE_MAX_COMPARISONS);
+    }
+
+    static List<String> select(List<String> phrases, String text, List<String> rankedPhrases,
+                               int minLength, int maxKeywords, int pairwiseMaxComparisons) {
+        Predicate<String> matcher;
+        ToIntFunction<String> rankOf;
+        if ((long) phrases.size() * rankedPhrases.size() <= pairwiseMaxComparisons) {
+            Map<String, Integer> ranks = indexRanks(rankedPhrases, new HashMap<>());
+            matcher = phrase -> matchesPairwise(phrase, rankedPhrases);
+            rankOf = phrase -> ranks.getOrDefault(phrase, -1);
+        } else {
+            PhraseRanking ranking = new PhraseRanking(rankedPhrases);
+            matcher = ranking::matches;
+            rankOf = ranking::rankOf;
+        }
+
+        Map<String, Candidate> distinct = new HashMap<>();
+        List<Candidate> candidates = new ArrayList<>();
+        for (String phrase : phrases) {
+            // 过滤掉单字词
+            if (phrase.length() < 2) {
+                continue;
+            }
+            Candidate candidate = distinct.computeIfAbsent(phrase, p -> matcher.test(p)
+                    ? new Candidate(p, rankOf.applyAsInt(p), text.indexOf(p))
+                    : Candidate.UNMATCHED);
+            if (candidate != Candidate.UNMATCHED) {
+                candidates.add(candidate);
+            }
+        }
+
+        candidates.sort(Candidate.ORDER);
+        List<String> keywords = new ArrayList<>(Math.min(maxKeywords, candidates.size()));
+        for (Candidate candidate : candidates) {
+            if (keywords.size() >= maxKeywords) {
+                break;
+            }
+            if (candidate.phrase.length() > minLength) {
+                keywords.add(candidate.phrase);
+            }
+        }
+        return keywords;
+    }
+
+    /**
+     * 词组是否为某个排名关键词的子串，或包含某个排名关键词
+     */
+    public boolean matches(String phrase) {
+        return isSubstring(phrase) || containsWord(phrase);
+    }
+
+    /**
+     * 关键词在排名中的下标，不在排名中时为-1
+     */
+    public int rankOf(String phrase) {
+        return ranks.getOrDefault(phrase, -1);
+    }
+
+    private static Map<String, Integer> indexRanks(List<String> rankedPhrases, Map<String, Integer> ranks) {
+        for (int i = 0; i < rankedPhrases.size(); i++) {
+            ranks.putIfAbsent(rankedPhrases.get(i), i);
+        }
+        return ranks;
+    }
+
+    private static boolean matchesPairwise(String phrase, List<String> rankedPhrases) {
+        for (String ranked : rankedPhrases) {
+            if (ranked.contains(phrase) || phrase.contains(ranked)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSubstring(String phrase) {
+        int state = 0;
+        for (int i = 0; i < phrase.length(); i++) {
+            Integer target = next.get(state).get(phrase.charAt(i));
+            if (target == null) {
+                return false;
+            }
+            state = target;
+        }
+        return true;
+    }
+
+    // 在自动机上求词组每个前缀与关键词集合的最长公共后缀，该后缀的某个后缀是完整关键词时词组包含该关键词
+    private boolean containsWord(String phrase) {
+        if (shortestWord[0] == 0) {
+            return true;
+        }
+        int state = 0;
+        int matched = 0;
+        for (int i = 0; i < phrase.length(); i++) {
+            char c = phrase.charAt(i);
+            while (state != 0 && !next.get(state).containsKey(c)) {
+                state = link[state];
+                matched = length[state];
+            }
+            Integer target = next.get(state).get(c);
+            if (target == null) {
+                continue;
+            }
+            state = target;
+            matched++;
+            if (shortestWord[state] <= matched || wordOnLink[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void markWords(List<String> rankedPhrases, List<Integer> wordStates) {
+        int states = next.size();
+        shortestWord = new int[states];
+        wordOnLink = new boolean[states];
+        Arrays.fill(shortestWord, NO_WORD);
+        for (int i = 0; i < wordStates.size(); i++) {
+            int state = wordStates.get(i);
+            shortestWord[state] = Math.min(shortestWord[state], rankedPhrases.get(i).length());
+        }
+        // 后缀链接指向长度更短的状态，按长度升序处理时祖先已经计算完成
+        Integer[] byLength = new Integer[states];
+        for (int i = 0; i < states; i++) {
+            byLength[i] = i;
+        }
+        Arrays.sort(byLength, Comparator.comparingInt(state -> length[state]));
+        for (int state : byLength) {
+            int parent = link[state];
+            if (parent >= 0) {
+                wordOnLink[state] = wordOnLink[parent] || shortestWord[parent] != NO_WORD;
+            }
+        }
+    }
+
+    // 广义后缀自动机的扩展，每个关键词从初始状态开始加入
+    private int extend(int last, char c) {
+        Integer existing = next.get(last).get(c);
+        if (existing != null) {
+            return length[last] + 1 == length[existing] ? existing : split(last, existing, c);
+        }
+        int current = newState(length[last] + 1);
+        int p = last;
+        while (p != -1 && !next.get(p).containsKey(c)) {
+            next.get(p).put(c, current);
+            p = link[p];
+        }
+        int suffix = 0;
+        if (p != -1) {
+            int q = next.get(p).get(c);
+            // split可能扩容数组，先得到结果再写入
+            suffix = length[p] + 1 == length[q] ? q : split(p, q, c);
+        }
+        link[current] = suffix;
+        return current;
+    }
+
+    private int split(int p, int q, char c) {
+        int clone = newState(length[p] + 1);
+        next.get(clone).putAll(next.get(q));
+        link[clone] = link[q];
+        while (p != -1 && Integer.valueOf(q).equals(next.get(p).get(c))) {
+            next.get(p).put(c, clone);
+            p = link[p];
+        }
+        link[q] = clone;
+        return clone;
+    }
+
+    private int newState(int stateLength) {
+        int state = next.size();
+        if (state == link.length) {
+            link = Arrays.copyOf(link, state * 2);
+            length = Arrays.copyOf(length, state * 2);
+        }
+        next.add(new HashMap<>(4));
+        length[state] = stateLength;
+        link[state] = 0;
+        return state;
+    }
+
+    private static final class Candidate {
+        static final Candidate UNMATCHED = new Candidate("", -1, -1);
+
+        // 长度降序；在排名中的排在不在排名中的前面；都在排名中时按排名，都不在时按在文本中第一次出现的位置。
+        // 原先一个在排名中、一个不在时按位置比较，不满足传递性，候选较多时排序会抛出IllegalArgumentException
+        static final Comparator<Candidate> ORDER = Comparator
+                .comparingInt((Candidate c) -> -c.phrase.length())
+                .thenComparingInt(c -> c.rank == -1 ? 1 : 0)
+                .thenComparingInt(c -> c.rank)
+                .thenComparingInt(c -> c.position);
+
+        private final String phrase;
+        private final int rank;
+        private final int position;
+
+        Candidate(String phrase, int rank, int position) {
+            this.phrase = phrase;
+            this.rank = rank;
+            this.position = position;
+        }
+    }
+}
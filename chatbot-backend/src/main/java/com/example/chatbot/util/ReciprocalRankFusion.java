@@ -0,0 +1,136 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.entity.KnowledgeBase;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多路检索结果的倒数排名融合（RRF）
+ *
+ * 每一路检索结果按返回顺序计名次，文档的融合得分为它在各路结果中的 1 / (k + 名次) 之和，
+ * 同时出现在多路结果中的文档得分更高。文档按ID去重，保留最先加入的一份内容，并记录来源和向量检索的相似度。
+ * 得分相同时先加入的文档在前，结果与各路返回的时间无关，只取决于加入的顺序。
+ * 非线程安全，每次检索单独创建，由同一个流依次加入各路结果。
+ */
+public final class ReciprocalRankFusion {
+    public static final int DEFAULT_K = 60;
+
+    private final int k;
+    private final Map<Object, Candidate> candidates = new HashMap<>();
+    private int order;
+
+    public ReciprocalRankFusion() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k 名次的平滑常数，越大时各名次之间的得分差距越小
+     */
+    public ReciprocalRankFusion(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.k = k;
+    }
+
+    /**
+     * 加入一路检索结果
+     *
+     * @param source  数据源名称
+     * @param results 按相关度从高到低排列的结果
+     */
+    public void add(String source, List<KnowledgeBase> results) {
+        int rank = 0;
+        for (KnowledgeBase doc : results) {
+            if (doc == null) {
+                continue;
+            }
+            rank++;
+            // 没有ID的文档按内容去重
+            Object key = doc.getId() != null ? doc.getId() : doc;
+            Candidate candidate = candidates.get(key);
+            if (candidate == null) {
+                candidate = new Candidate(doc, order++);
+                candidates.put(key, candidate);
+            }
+            candidate.accept(source, rank, doc.getScore(), k);
+        }
+    }
+
+    /**
+     * 去重后的文档数量
+     */
+    public int size() {
+        return candidates.size();
+    }
+
+    /**
+     * 按融合得分从高到低取前topK个候选
+     *
+     * @param topK 最多返回的数量，小于等于0时返回全部
+     */
+    public List<Candidate> ranked(int topK) {
+        List<Candidate> ranked = new ArrayList<>(candidates.values());
+        ranked.sort(Comparator.comparingDouble(Candidate::getFusedScore).reversed()
+                .thenComparingInt(Candidate::getOrder));
+        if (topK > 0 && ranked.size() > topK) {
+            return new ArrayList<>(ranked.subList(0, topK));
+        }
+        return ranked;
+    }
+
+    /**
+     * 融合中的候选文档
+     */
+    public static final class Candidate {
+        private final KnowledgeBase doc;
+        private final int order;
+        private final List<String> sources = new ArrayList<>(3);
+        private double fusedScore;
+        private Double similarity;
+
+        private Candidate(KnowledgeBase doc, int order) {
+            this.doc = doc;
+            this.order = order;
+        }
+
+        private void accept(String source, int rank, Double score, int k) {
+            // 同一路结果中重复出现的文档只按最靠前的名次计分
+            if (sources.contains(source)) {
+                return;
+            }
+            sources.add(source);
+            fusedScore += 1.0 / (k + rank);
+            if (score != null && (similarity == null || score > similarity)) {
+                similarity = score;
+            }
+        }
+
+        public KnowledgeBase getDoc() {
+            return doc;
+        }
+
+        public List<String> getSources() {
+            return sources;
+        }
+
+        public double getFusedScore() {
+            return fusedScore;
+        }
+
+        /**
+         * 数据源返回的最高相似度，只有向量检索会返回
+         */
+        public Double getSimilarity() {
+            return similarity;
+        }
+
+        int getOrder() {
+            return order;
+        }
+    }
+}
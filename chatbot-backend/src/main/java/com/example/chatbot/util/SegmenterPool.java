@@ -0,0 +1,68 @@
+package com.example.chatbot.util;
+
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * 分词器池
+ *
+ * HanLP的Segment实例带有可变的配置，不保证在多个线程中共享时的正确性。池中预先创建固定数量的分词器，
+ * 每次分词独占一个实例，用完归还；所有实例都在使用中时等待归还。数量与CPU核数相当即可让分词在多核上并行。
+ * 不使用ThreadLocal：开启虚拟线程后每个请求都是新线程，ThreadLocal会为每个请求创建一个分词器。
+ */
+public final class SegmenterPool {
+    private final BlockingQueue<Segment> idle;
+    private final int size;
+
+    /**
+     * @param size    分词器数量，小于等于0时与CPU核数相同
+     * @param factory 创建分词器的函数
+     */
+    public SegmenterPool(int size, Supplier<Segment> factory) {
+        this.size = size > 0 ? size : Runtime.getRuntime().availableProcessors();
+        this.idle = new ArrayBlockingQueue<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            idle.add(factory.get());
+        }
+    }
+
+    /**
+     * 借用一个分词器对文本分词
+     *
+     * @param text 输入文本
+     * @return 分词结果
+     */
+    public List<Term> seg(String text) {
+        Segment segment = borrow();
+        try {
+            return segment.seg(text);
+        } finally {
+            idle.add(segment);
+        }
+    }
+
+    private Segment borrow() {
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a segmenter", e);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 当前空闲的分词器数量
+     */
+    public int available() {
+        return idle.size();
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.chatbot.util;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 流式输出帧合并
+ *
+ * 模型每次只输出一两个token，逐个片段发送时每个片段都要单独序列化和写出。
+ * 这里把连续的片段合并为一帧：累计字节数达到上限时立即发送，否则在一帧的第一个片段到达后等待固定时间再发送，
+ * 每个片段最多延迟maxDelay。流结束或出错时先发送剩余的内容。
+ */
+public final class SseFrameCoalescer {
+
+    private SseFrameCoalescer() {
+    }
+
+    /**
+     * 合并流式输出的文本片段
+     *
+     * @param chunks   模型输出的文本片段
+     * @param maxBytes 一帧的最大字节数（UTF-8）
+     * @param maxDelay 一帧中第一个片段最多等待的时间，为0时不合并
+     * @return 合并后的帧
+     */
+    public static Flux<String> coalesce(Flux<String> chunks, int maxBytes, Duration maxDelay) {
+        return coalesce(chunks, maxBytes, maxDelay, Schedulers.parallel());
+    }
+
+    static Flux<String> coalesce(Flux<String> chunks, int maxBytes, Duration maxDelay, Scheduler timer) {
+        if (maxDelay.isZero() || maxDelay.isNegative()) {
+            return chunks;
+        }
+        return Flux.create(sink -> {
+            Frame frame = new Frame(sink, maxBytes, maxDelay.toNanos(), timer);
+            Disposable.Swap upstream = Disposables.swap();
+            sink.onDispose(() -> {
+                upstream.dispose();
+                frame.cancelFlush();
+            });
+            upstream.update(chunks.subscribe(frame::append, frame::error, frame::complete));
+        });
+    }
+
+    // UTF-8编码后的字节数，代理对按每个char两字节计算，合计为四字节
+    static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                bytes += 2;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    // 上游片段和定时发送可能在不同线程上，都在锁内修改缓冲区并按顺序发送
+    private static final class Frame {
+        private final FluxSink<String> sink;
+        private final int maxBytes;
+        private final long maxDelayNanos;
+        private final Scheduler timer;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final StringBuilder pending = new StringBuilder();
+        private int pendingBytes;
+        private Disposable scheduledFlush;
+        private boolean done;
+
+        Frame(FluxSink<String> sink, int maxBytes, long maxDelayNanos, Scheduler timer) {
+            this.sink = sink;
+            this.maxBytes = maxBytes;
+            this.maxDelayNanos = maxDelayNanos;
+            this.timer = timer;
+        }
+
+        void append(String chunk) {
+            lock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+                pending.append(chunk);
+                pendingBytes += utf8Length(chunk);
+                if (maxBytes > 0 && pendingBytes >= maxBytes) {
+                    cancelFlush();
+                    emit();
+                } else if (scheduledFlush == null) {
+                    scheduledFlush = timer.schedule(this::flushOnTimer, maxDelayNanos, TimeUnit.NANOSECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void complete() {
+            lock.lock();
+            try {
+                finish();
+                sink.complete();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void error(Throwable error) {
+            lock.lock();
+            try {
+                finish();
+                sink.error(error);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void cancelFlush() {
+            lock.lock();
+            try {
+                if (scheduledFlush != null) {
+                    scheduledFlush.dispose();
+                    scheduledFlush = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void flushOnTimer() {
+            lock.lock();
+            try {
+                scheduledFlush = null;
+                if (!done) {
+                    emit();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void finish() {
+            cancelFlush();
+            emit();
+            done = true;
+        }
+
+        private void emit() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            String text = pending.toString();
+            pending.setLength(0);
+            pendingBytes = 0;
+            sink.next(text);
+        }
+    }
+}
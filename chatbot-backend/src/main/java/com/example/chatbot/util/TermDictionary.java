@@ -0,0 +1,104 @@
+package com.example.chatbot.util;
+
+import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
+
+import java.util.Collection;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * 关键词提取使用的词条分类词典
+ *
+ * 启动时把配置的常用短语和停用词编译为双数组Trie，每个词条对应一个整数标记。
+ * 分类一个词只需一次按字符遍历的精确匹配，不创建任何对象，替代每次查询CustomDictionary后
+ * 再把词性属性转为字符串判断是否包含"x"的做法。同一个词既是常用短语又是停用词时按常用短语处理，
+ * 与先加入常用短语、后加入停用词时CustomDictionary保留先加入的词性一致。
+ * 可以指定一个外部词典（如HanLP自带的自定义词典），不在配置中的词再查询一次外部词典，
+ * 命中时同样按常用短语处理，每个词最多查询两次精确匹配。
+ * 构建后只读，外部词典支持并发查询时可以在多个线程中共享。
+ */
+public final class TermDictionary {
+    public static final int NONE = 0;
+    public static final int PHRASE = 1;
+    public static final int STOP_WORD = 2;
+
+    private final DoubleArrayTrie<Integer> trie;
+    private final byte[] flags;
+    private final Predicate<String> externalPhrases;
+
+    private TermDictionary(DoubleArrayTrie<Integer> trie, byte[] flags, Predicate<String> externalPhrases) {
+        this.trie = trie;
+        this.flags = flags;
+        this.externalPhrases = externalPhrases;
+    }
+
+    /**
+     * 编译词典
+     *
+     * @param phrases   常用短语
+     * @param stopWords 停用词
+     */
+    public static TermDictionary compile(Collection<String> phrases, Collection<String> stopWords) {
+        return compile(phrases, stopWords, null);
+    }
+
+    /**
+     * 编译词典，不在配置中的词再查询外部词典
+     *
+     * @param phrases         常用短语
+     * @param stopWords       停用词
+     * @param externalPhrases 外部词典的查询，命中的词按常用短语处理，为null时不查询
+     */
+    public static TermDictionary compile(Collection<String> phrases, Collection<String> stopWords,
+                                         Predicate<String> externalPhrases) {
+        TreeMap<String, Integer> entries = new TreeMap<>();
+        if (stopWords != null) {
+            stopWords.forEach(word -> entries.put(word, STOP_WORD));
+        }
+        if (phrases != null) {
+            phrases.forEach(phrase -> entries.put(phrase, PHRASE));
+        }
+        entries.remove("");
+        if (entries.isEmpty()) {
+            return new TermDictionary(null, new byte[0], externalPhrases);
+        }
+
+        // 精确匹配返回的是词条在有序键中的下标，标记按同样的顺序保存在数组中
+        byte[] flags = new byte[entries.size()];
+        int index = 0;
+        for (int flag : entries.values()) {
+            flags[index++] = (byte) flag;
+        }
+        DoubleArrayTrie<Integer> trie = new DoubleArrayTrie<>();
+        trie.build(entries);
+        return new TermDictionary(trie, flags, externalPhrases);
+    }
+
+    /**
+     * 查询词条的标记
+     *
+     * @return PHRASE、STOP_WORD，不在配置和外部词典中时为NONE
+     */
+    public int classify(String word) {
+        if (word == null || word.isEmpty()) {
+            return NONE;
+        }
+        int index = trie == null ? -1 : trie.exactMatchSearch(word);
+        if (index >= 0) {
+            return flags[index];
+        }
+        return externalPhrases != null && externalPhrases.test(word) ? PHRASE : NONE;
+    }
+
+    public boolean isStopWord(String word) {
+        return classify(word) == STOP_WORD;
+    }
+
+    public boolean isPhrase(String word) {
+        return classify(word) == PHRASE;
+    }
+
+    public int size() {
+        return flags.length;
+    }
+}
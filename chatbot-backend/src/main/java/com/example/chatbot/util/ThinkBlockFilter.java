@@ -0,0 +1,186 @@
+package com.example.chatbot.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 流式输出的思考过程过滤器
+ *
+ * 逐个接收模型输出的文本片段，去除&lt;think&gt;...&lt;/think&gt;块，返回可以展示给用户的部分。
+ * 标签被拆分到多个片段中时，未确定的标签前缀会暂存到下一个片段再判断；
+ * 回答开头和思考块之后的空白会被跳过。累计的可见文本即为最终保存的回答，不需要再次清理。
+ * 部分Ollama聊天模板把&lt;think&gt;放在提示词中，模型输出只有&lt;/think&gt;，因此第一个标签出现之前的输出先暂存：
+ * 先出现&lt;think&gt;时暂存的内容作为可见文本，先出现&lt;/think&gt;时暂存的内容是思考过程，直接丢弃；
+ * 输出结束时仍没有标签则全部作为可见文本。配置的模型都会输出思考块（不思考时为空块），不会因此延迟输出。
+ * 每个实例只处理一次回答。accept和finish由输出流依次调用，客户端断开时getText在取消的线程上读取已生成的部分，
+ * 可能与仍在进行的accept同时执行，因此各方法在同一把锁内访问缓冲区。
+ */
+public class ThinkBlockFilter {
+    private static final String OPEN_TAG = "<think>";
+    private static final String CLOSE_TAG = "</think>";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final StringBuilder visible = new StringBuilder();
+    // 第一个标签出现之前的输出
+    private final StringBuilder pending = new StringBuilder();
+    // 已读到的可能是标签开头的字符
+    private final StringBuilder partialTag = new StringBuilder(CLOSE_TAG.length());
+    private boolean inThink;
+    private boolean skipWhitespace = true;
+    // 是否已出现第一个标签
+    private boolean resolved;
+
+    /**
+     * 处理一个输出片段
+     *
+     * @param chunk 模型输出的文本片段
+     * @return 片段中可见的文本，没有可见内容时返回空字符串
+     */
+    public String accept(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return "";
+        }
+        lock.lock();
+        try {
+            // 常见情况：思考块之外且片段中没有标签，原样返回
+            if (resolved && !inThink && !skipWhitespace && partialTag.isEmpty() && chunk.indexOf('<') < 0) {
+                visible.append(chunk);
+                return chunk;
+            }
+            int start = visible.length();
+            for (int i = 0; i < chunk.length(); i++) {
+                process(chunk.charAt(i));
+            }
+            return visible.length() == start ? "" : visible.substring(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 输出结束时调用，返回暂存的不构成标签的剩余文本，以及没有出现任何标签时暂存的全部输出
+     *
+     * @return 剩余的可见文本，没有时返回空字符串
+     */
+    public String finish() {
+        lock.lock();
+        try {
+            int start = visible.length();
+            if (!inThink) {
+                emit(partialTag);
+            }
+            partialTag.setLength(0);
+            resolve();
+            return visible.length() == start ? "" : visible.substring(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 到目前为止全部可见的文本，已去除首尾空白
+     */
+    public String getText() {
+        lock.lock();
+        try {
+            return visible.toString().strip();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void process(char c) {
+        if (partialTag.isEmpty() && c != '<') {
+            if (!inThink) {
+                emit(c);
+            }
+            return;
+        }
+        partialTag.append(c);
+        int length = partialTag.length();
+        String tag = matchingTag();
+        if (tag != null) {
+            if (length == tag.length()) {
+                // 完整匹配到标签，切换状态
+                partialTag.setLength(0);
+                onTag(tag);
+            }
+            return;
+        }
+        // 不构成标签：暂存的字符作为普通文本，最后一个字符可能是新标签的开头
+        if (c == '<') {
+            partialTag.setLength(length - 1);
+            if (!inThink) {
+                emit(partialTag);
+            }
+            partialTag.setLength(0);
+            partialTag.append('<');
+        } else {
+            if (!inThink) {
+                emit(partialTag);
+            }
+            partialTag.setLength(0);
+        }
+    }
+
+    // 暂存的字符可能构成的标签：思考块内只有结束标签，之外是开始标签，第一个标签出现之前也可能是结束标签
+    private String matchingTag() {
+        if (inThink) {
+            return isPrefixOf(CLOSE_TAG) ? CLOSE_TAG : null;
+        }
+        if (isPrefixOf(OPEN_TAG)) {
+            return OPEN_TAG;
+        }
+        return !resolved && isPrefixOf(CLOSE_TAG) ? CLOSE_TAG : null;
+    }
+
+    private boolean isPrefixOf(String tag) {
+        if (partialTag.length() > tag.length()) {
+            return false;
+        }
+        for (int i = 0; i < partialTag.length(); i++) {
+            if (partialTag.charAt(i) != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void onTag(String tag) {
+        if (OPEN_TAG.equals(tag)) {
+            resolve();
+            inThink = true;
+            skipWhitespace = false;
+            return;
+        }
+        if (!resolved) {
+            // 没有开始标签的思考过程，暂存的内容都属于思考过程
+            pending.setLength(0);
+            resolved = true;
+        }
+        inThink = false;
+        skipWhitespace = true;
+    }
+
+    // 暂存的输出不是思考过程，作为可见文本
+    private void resolve() {
+        if (!resolved) {
+            resolved = true;
+            visible.append(pending);
+            pending.setLength(0);
+        }
+    }
+
+    private void emit(char c) {
+        if (skipWhitespace && Character.isWhitespace(c)) {
+            return;
+        }
+        skipWhitespace = false;
+        (resolved ? visible : pending).append(c);
+    }
+
+    private void emit(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            emit(text.charAt(i));
+        }
+    }
+}
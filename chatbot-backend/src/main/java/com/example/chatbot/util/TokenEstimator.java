@@ -0,0 +1,84 @@
+package com.example.chatbot.util;
+
+/**
+ * 本地token估算工具
+ *
+ * 这不是模型的分词器，只按字符类别估算，不依赖词表文件和远程分词服务：
+ * 每个中日韩字符或标点记1个token，连续的英文字母和数字每4个字符记1个token，空白不计。
+ * 与Qwen/DeepSeek的BPE分词结果相比，常用汉字在词表中多为多字词，中文文本的估算值通常偏高二到四成；
+ * 英文单词按长度折算，常见词估算偏高，长的专有名词和代码标识符可能偏低约两成；连续空白和换行实际也占token，这里不计。
+ * 提示词预算以中文为主，整体偏于保守，PromptAssembler为每条消息另外预留固定开销。用于控制提示词长度，而不是精确计费。
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的token数量
+     *
+     * @param text 输入文本
+     * @return 估算的token数量
+     */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int wordRun = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWordChar(c)) {
+                // 连续英文字母和数字中每4个字符的第一个字符开始一个新token
+                if (wordRun++ % 4 == 0) {
+                    tokens++;
+                }
+                continue;
+            }
+            wordRun = 0;
+            if (!Character.isWhitespace(c) && !Character.isLowSurrogate(c)) {
+                tokens++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 将文本截断到不超过指定token数量的前缀
+     *
+     * @param text      输入文本
+     * @param maxTokens 最大token数量
+     * @return 截断后的文本，未超出时返回原文本
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        if (maxTokens <= 0) {
+            return "";
+        }
+        int tokens = 0;
+        int wordRun = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int cost;
+            if (isWordChar(c)) {
+                cost = wordRun++ % 4 == 0 ? 1 : 0;
+            } else {
+                wordRun = 0;
+                cost = Character.isWhitespace(c) || Character.isLowSurrogate(c) ? 0 : 1;
+            }
+            if (tokens + cost > maxTokens) {
+                // 不在代理对中间截断
+                int end = Character.isLowSurrogate(c) ? i - 1 : i;
+                return text.substring(0, end);
+            }
+            tokens += cost;
+        }
+        return text;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,2 @@
+-- 生成被取消时保存的部分回答标记为截断
+ALTER TABLE chatbotmb.chat_messages ADD COLUMN truncated BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,63 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.properties.KeywordExtractorProperties;
+
+import java.util.List;
+
+/**
+ * 基准测试使用的文本和关键词配置，与application.yaml中的配置保持一致
+ */
+final class BenchmarkTexts {
+
+    static final List<String> STOP_WORDS = List.of(
+            "的", "了", "和", "是", "在", "我", "有", "这", "个", "们", "中", "为", "以", "及", "与", "或");
+
+    static final List<String> COMMON_PHRASES = List.of(
+            "人工智能", "安装指南", "OfficePro 2023", "数据分析", "移动办公", "Python", "Photoshop", "windows 11",
+            "MySQL", "高可用", "机器学习", "证件照", "AutoCAD 2023", "微信小程序", "项目管理", "Premiere",
+            "市场营销", "容器化", "Docker", "wsl安装");
+
+    // 用户在聊天中常见的短问题
+    static final List<String> CHAT_MESSAGES = List.of(
+            "OfficePro 2023安装的时候提示缺少组件怎么办？",
+            "打印机连接正常但是无法打印文档，应该怎么排查",
+            "Photoshop怎么制作一寸证件照，背景换成蓝色",
+            "windows 11上wsl安装失败，错误代码0x80370102",
+            "MySQL主从复制延迟很高，有什么高可用方案推荐吗",
+            "如何用Python做数据分析，需要先学习哪些库",
+            "Docker容器化部署Spring Boot应用的步骤是什么",
+            "微信小程序登录接口返回的session_key过期了怎么处理",
+            "项目管理中怎么制定合理的里程碑和风险预案",
+            "机器学习和深度学习的区别是什么，人工智能入门该怎么学");
+
+    private BenchmarkTexts() {
+    }
+
+    static KeywordExtractorProperties properties() {
+        KeywordExtractorProperties properties = new KeywordExtractorProperties();
+        properties.setMinWordLength(3);
+        properties.setMinKeywordCount(3);
+        properties.setDefaultKeywordCount(5);
+        properties.setStopWords(STOP_WORDS);
+        properties.setCommonPhrases(COMMON_PHRASES);
+        return properties;
+    }
+
+    /**
+     * 由聊天问题拼接的长文章，段落之间以空行分隔
+     *
+     * @param paragraphs 段落数量
+     */
+    static String article(int paragraphs) {
+        StringBuilder builder = new StringBuilder("OfficePro 2023与常用软件故障排查手册");
+        for (int i = 0; i < paragraphs; i++) {
+            builder.append("\n\n");
+            // 每段由三个问题组成，段落之间的内容各不相同
+            for (int j = 0; j < 3; j++) {
+                builder.append(CHAT_MESSAGES.get((i * 3 + j) % CHAT_MESSAGES.size()))
+                        .append("（第").append(i + 1).append("节）");
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.properties.KeywordExtractorProperties;
+import com.example.chatbot.util.KeywordExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发关键词提取的吞吐量，关闭结果缓存，每次调用都实际分词和排序。
+ * main方法依次以1、2、4…直到CPU核数个线程运行，比较各线程数下的总吞吐量，分词器数量与CPU核数相同。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeywordExtractionScalingBenchmark {
+    private KeywordExtractor extractor;
+    private List<String> messages;
+
+    @Setup
+    public void setUp() {
+        KeywordExtractorProperties properties = BenchmarkTexts.properties();
+        properties.setCacheMaximumWeight(0);
+        properties.setSegmenterPoolSize(0);
+        extractor = new KeywordExtractor(properties);
+        messages = BenchmarkTexts.CHAT_MESSAGES;
+    }
+
+    // 每个线程各自轮换问题，避免所有线程同时处理同一段文本
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public List<String> extractKeywords(Cursor cursor) {
+        String message = messages.get(cursor.next++ % messages.size());
+        return extractor.extractKeywords(message, 3);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            new Runner(new OptionsBuilder()
+                    .include(KeywordExtractionScalingBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.util.KeywordExtractor;
+import com.example.chatbot.util.PhraseRanking;
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.seg.common.Term;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 按TextRank排名筛选和排序词组的开销：原先逐对比较子串、排序时重复查找排名和位置，
+ * 现在使用PhraseRanking。TextRank排名在准备阶段计算，只测量筛选和排序。
+ * message为一条聊天问题，PhraseRanking按词组数直接逐对比较；article为由聊天问题拼接的长文章整体作为一段文本，
+ * PhraseRanking构建自动机匹配。准备阶段先检查两种实现的结果相同，任何异常都会让基准测试失败。
+ *
+ * 运行：在IDE中执行main方法，或者
+ * mvn test-compile 后以 java -cp target/test-classes:<test classpath> org.openjdk.jmh.Main PhraseRankingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhraseRankingBenchmark {
+    private static final int MAX_KEYWORDS = 5;
+
+    @Param({"message", "article"})
+    private String input;
+
+    private List<String> phrases;
+    private String text;
+    private List<String> rankedPhrases;
+    private int minLength;
+
+    @Setup
+    public void setUp() {
+        // 创建KeywordExtractor时会把常用短语和停用词加入CustomDictionary，与线上的词典状态一致
+        new KeywordExtractor(BenchmarkTexts.properties());
+        minLength = BenchmarkTexts.properties().getMinWordLength();
+
+        String source = "message".equals(input) ? BenchmarkTexts.CHAT_MESSAGES.get(0) : BenchmarkTexts.article(200);
+        phrases = new ArrayList<>();
+        for (Term term : HanLP.segment(source)) {
+            if (term.nature != Nature.w && !term.word.isBlank()) {
+                phrases.add(term.word);
+            }
+        }
+        text = String.join(" ", phrases);
+        rankedPhrases = HanLP.extractKeyword(text, MAX_KEYWORDS * 3);
+
+        List<String> expected = pairwise();
+        List<String> actual = phraseRanking();
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Results differ: " + expected + " vs " + actual);
+        }
+    }
+
+    @Benchmark
+    public List<String> pairwise() {
+        return phrases.stream()
+                .filter(phrase -> phrase.length() >= 2)
+                .filter(phrase -> rankedPhrases.stream()
+                        .anyMatch(ranked -> ranked.contains(phrase) || phrase.contains(ranked)))
+                .sorted((a, b) -> {
+                    int lengthCompare = Integer.compare(b.length(), a.length());
+                    if (lengthCompare != 0) {
+                        return lengthCompare;
+                    }
+                    // 在排名中的排在前面，与PhraseRanking的比较规则相同
+                    int aIndex = rankedPhrases.indexOf(a);
+                    int bIndex = rankedPhrases.indexOf(b);
+                    if ((aIndex == -1) != (bIndex == -1)) {
+                        return aIndex == -1 ? 1 : -1;
+                    }
+                    if (aIndex != -1) {
+                        return Integer.compare(aIndex, bIndex);
+                    }
+                    return Integer.compare(text.indexOf(a), text.indexOf(b));
+                })
+                .filter(phrase -> phrase.length() > minLength)
+                .limit(MAX_KEYWORDS)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> phraseRanking() {
+        return PhraseRanking.select(phrases, text, rankedPhrases, minLength, MAX_KEYWORDS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PhraseRankingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.chatbot.benchmark;
+
+import com.example.chatbot.util.KeywordExtractor;
+import com.example.chatbot.util.TermDictionary;
+import com.hankcs.hanlp.dictionary.CustomDictionary;
+import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
+import com.hankcs.hanlp.seg.Segment;
+import com.hankcs.hanlp.seg.common.Term;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分词结果中词条分类的开销：原先判断停用词时查询CustomDictionary并把词性属性转为字符串判断，
+ * 判断是否保留为词组时再查询一次CustomDictionary；现在查询编译好的TermDictionary，
+ * 不在配置中的词再查询一次CustomDictionary。每次调用分类一组聊天问题的全部分词结果，
+ * 两种做法都包含停用词和词组两部分判断。
+ *
+ * 运行：在IDE中执行main方法，或者
+ * mvn test-compile 后以 java -cp target/test-classes:<test classpath> org.openjdk.jmh.Main TermClassificationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TermClassificationBenchmark {
+    private String[] words;
+    private TermDictionary termDictionary;
+
+    @Setup
+    public void setUp() {
+        // 创建KeywordExtractor时会把常用短语和停用词加入CustomDictionary，与线上的词典状态一致
+        new KeywordExtractor(BenchmarkTexts.properties());
+        termDictionary = TermDictionary.compile(BenchmarkTexts.COMMON_PHRASES, BenchmarkTexts.STOP_WORDS,
+                CustomDictionary::contains);
+
+        Segment segment = new DijkstraSegment();
+        List<String> segmented = new ArrayList<>();
+        for (String message : BenchmarkTexts.CHAT_MESSAGES) {
+            for (Term term : segment.seg(message)) {
+                segmented.add(term.word);
+            }
+        }
+        words = segmented.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public void customDictionary(Blackhole blackhole) {
+        for (String word : words) {
+            boolean stopWord = CustomDictionary.contains(word)
+                    && CustomDictionary.get(word).toString().contains("x");
+            blackhole.consume(stopWord);
+            if (!stopWord) {
+                blackhole.consume(CustomDictionary.contains(word));
+            }
+        }
+    }
+
+    @Benchmark
+    public void termDictionary(Blackhole blackhole) {
+        for (String word : words) {
+            int flags = termDictionary.classify(word);
+            blackhole.consume(flags == TermDictionary.STOP_WORD);
+            if (flags != TermDictionary.STOP_WORD) {
+                blackhole.consume(flags == TermDictionary.PHRASE);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TermClassificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
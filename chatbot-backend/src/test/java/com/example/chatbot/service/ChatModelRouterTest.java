@@ -0,0 +1,201 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.properties.RoutingProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ChatModelRouterTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final List<StubOllama> stubs = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stubs.forEach(StubOllama::stop);
+    }
+
+    @Test
+    void stream_ShouldRetryOnAnotherEndpointAndTakeFailedOneOutOfRotation() throws IOException {
+        StubOllama failing = start(new StubOllama(500, null));
+        StubOllama healthy = start(new StubOllama(200, null, "你好", "世界"));
+        ChatModelRouter router = router(failing, healthy);
+
+        assertEquals(List.of("你好", "世界"), ask(router).collectList().block(TIMEOUT));
+
+        // 失败的节点进入冷却，之后的请求直接发往健康的节点
+        assertEquals(List.of("你好", "世界"), ask(router).collectList().block(TIMEOUT));
+        assertEquals(1, failing.requests.get());
+        assertEquals(2, healthy.requests.get());
+        assertFalse(router.status("qwen3").get(0).available());
+        assertTrue(router.status("qwen3").get(1).available());
+    }
+
+    @Test
+    void stream_ShouldPreferEndpointWithFewerInFlightStreams() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StubOllama busy = start(new StubOllama(200, release, "慢"));
+        StubOllama idle = start(new StubOllama(200, null, "快"));
+        ChatModelRouter router = router(busy, idle);
+
+        // 第一个请求占用第一个节点且迟迟不返回
+        Disposable first = ask(router).subscribe();
+        long deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (busy.requests.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, router.status("qwen3").get(0).inFlight());
+
+        assertEquals(List.of("快"), ask(router).collectList().block(TIMEOUT));
+        assertEquals(1, busy.requests.get());
+        assertEquals(1, idle.requests.get());
+
+        release.countDown();
+        first.dispose();
+    }
+
+    @Test
+    void stream_ShouldKeepSessionOnOneEndpointAndFallBackWhenItFails() throws IOException {
+        StubOllama first = start(new StubOllama(200, null, "你好"));
+        StubOllama second = start(new StubOllama(200, null, "你好"));
+        ChatModelRouter router = router(first, second);
+
+        // 同一会话的请求都发往同一个节点
+        for (int i = 0; i < 3; i++) {
+            assertEquals(List.of("你好"), ask(router, "1:session").collectList().block(TIMEOUT));
+        }
+        StubOllama sticky = first.requests.get() == 3 ? first : second;
+        StubOllama other = sticky == first ? second : first;
+        assertEquals(0, other.requests.get());
+
+        // 固定的节点宕机后换到另一个节点重试，冷却期间该会话的请求都发往另一个节点
+        sticky.stop();
+        assertEquals(List.of("你好"), ask(router, "1:session").collectList().block(TIMEOUT));
+        assertEquals(List.of("你好"), ask(router, "1:session").collectList().block(TIMEOUT));
+        assertEquals(2, other.requests.get());
+    }
+
+    private Flux<String> ask(ChatModelRouter router) {
+        return ask(router, null);
+    }
+
+    private Flux<String> ask(ChatModelRouter router, String sessionKey) {
+        return router.stream("qwen3", sessionKey, client -> client.prompt().user("你好").stream().content())
+                .filter(chunk -> !chunk.isEmpty());
+    }
+
+    private ChatModelRouter router(StubOllama... endpoints) {
+        ModelProperties.ModelOption option = new ModelProperties.ModelOption();
+        option.setModel("qwen3:4b");
+        List<String> urls = new ArrayList<>();
+        for (StubOllama endpoint : endpoints) {
+            urls.add(endpoint.baseUrl());
+        }
+        option.setEndpoints(urls);
+        ModelProperties modelProperties = new ModelProperties();
+        modelProperties.setOptions(Map.of("qwen3", option));
+        return new ChatModelRouter(mock(ChatClient.class), modelProperties, new RoutingProperties());
+    }
+
+    private StubOllama start(StubOllama stub) throws IOException {
+        stub.start();
+        stubs.add(stub);
+        return stub;
+    }
+
+    /**
+     * 模拟Ollama的/api/chat流式接口
+     */
+    private static class StubOllama {
+        private final int status;
+        private final CountDownLatch release;
+        private final String[] chunks;
+        private final AtomicInteger requests = new AtomicInteger();
+        private HttpServer server;
+        private boolean stopped;
+
+        StubOllama(int status, CountDownLatch release, String... chunks) {
+            this.status = status;
+            this.release = release;
+            this.chunks = chunks;
+        }
+
+        void start() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/api/chat", this::handle);
+            server.start();
+        }
+
+        void stop() {
+            if (!stopped) {
+                stopped = true;
+                server.stop(0);
+            }
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            if (release != null) {
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (status != 200) {
+                byte[] body = "{\"error\":\"model runner crashed\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String chunk : chunks) {
+                    out.write(line(chunk, false));
+                    out.flush();
+                }
+                out.write(line("", true));
+            }
+        }
+
+        private byte[] line(String content, boolean done) {
+            String json = "{\"model\":\"qwen3:4b\",\"created_at\":\"2025-01-01T00:00:00Z\","
+                    + "\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"},"
+                    + "\"done\":" + done
+                    + (done ? ",\"done_reason\":\"stop\",\"total_duration\":1000,\"load_duration\":100,"
+                    + "\"prompt_eval_count\":3,\"prompt_eval_duration\":100,\"eval_count\":2,\"eval_duration\":100" : "")
+                    + "}\n";
+            return json.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.dto.PageResponse;
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.properties.RetrievalProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KnowledgeRetrieverTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    private RedisService redisService;
+
+    @Mock
+    private KnowledgeService knowledgeService;
+
+    @Mock
+    private KnowledgeCacheWriter knowledgeCacheWriter;
+
+    private RetrievalProperties retrievalProperties;
+    private KnowledgeRetriever knowledgeRetriever;
+
+    @BeforeEach
+    void setUp() {
+        retrievalProperties = new RetrievalProperties();
+        retrievalProperties.setTimeoutMilliseconds(800);
+        retrievalProperties.setTopK(5);
+        knowledgeRetriever = new KnowledgeRetriever(redisService, knowledgeService, knowledgeCacheWriter,
+                retrievalProperties);
+    }
+
+    @Test
+    void search_ShouldFuseEverySourceThatReturnsWithinBudget() {
+        // Redis立即返回三个文档，向量和数据库检索稍后返回，仍在时间预算内
+        when(redisService.searchKnowledgeReactive(anyList()))
+                .thenReturn(Mono.just(List.of(doc(1L, null), doc(2L, null), doc(3L, null))));
+        when(knowledgeService.searchSimilarReactive(anyString(), anyInt()))
+                .thenReturn(Mono.delay(Duration.ofMillis(100)).thenReturn(List.of(doc(10L, 0.93), doc(2L, 0.88))));
+        when(knowledgeService.searchReactive(anyString(), anyInt(), anyInt()))
+                .thenReturn(Mono.delay(Duration.ofMillis(50)).thenReturn(page(doc(2L, null), doc(11L, null))));
+
+        List<KnowledgeBase> docs = knowledgeRetriever.search("如何安装OfficePro", List.of("OfficePro", "安装")).block(TIMEOUT);
+
+        // 三路都命中的文档排在最前，向量和数据库独有的文档也进入结果
+        assertEquals(List.of(2L, 1L, 10L, 11L, 3L), ids(docs));
+        verify(knowledgeCacheWriter).enqueue(docs);
+    }
+
+    @Test
+    void search_ShouldDropSourcesThatExceedBudget() {
+        retrievalProperties.setTimeoutMilliseconds(100);
+        when(redisService.searchKnowledgeReactive(anyList())).thenReturn(Mono.just(List.of(doc(1L, null))));
+        when(knowledgeService.searchSimilarReactive(anyString(), anyInt())).thenReturn(Mono.never());
+        when(knowledgeService.searchReactive(anyString(), anyInt(), anyInt()))
+                .thenReturn(Mono.error(new IllegalStateException("knowledge-service unavailable")));
+
+        long start = System.nanoTime();
+        List<KnowledgeBase> docs = knowledgeRetriever.search("如何安装OfficePro", List.of("OfficePro")).block(TIMEOUT);
+
+        assertEquals(List.of(1L), ids(docs));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+    }
+
+    private static List<Long> ids(List<KnowledgeBase> docs) {
+        return docs.stream().map(KnowledgeBase::getId).toList();
+    }
+
+    private static PageResponse<KnowledgeBase> page(KnowledgeBase... docs) {
+        return new PageResponse<>(List.of(docs), 0, 10, docs.length);
+    }
+
+    private static KnowledgeBase doc(Long id, Double score) {
+        KnowledgeBase doc = new KnowledgeBase();
+        doc.setId(id);
+        doc.setTitle("文档" + id);
+        doc.setScore(score);
+        return doc;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.exception.ModelBusyException;
+import com.example.chatbot.properties.ModelProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelBulkheadTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void stream_ShouldQueueWhenFullAndHandOverPermitOnCompletion() {
+        ModelBulkhead bulkhead = bulkhead(1, 2, 2, 10_000);
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+
+        Disposable running = bulkhead.stream("qwen3", 1L, first::asFlux).subscribe();
+        Flux<String> queued = bulkhead.stream("qwen3", 2L, () -> Flux.just("第二个"));
+        List<String> result = new CopyOnWriteArrayList<>();
+        queued.subscribe(result::add);
+        assertEquals(new ModelBulkhead.Status(1, 1), bulkhead.status("qwen3"));
+
+        // 第一个请求结束后许可交给排队的请求
+        first.tryEmitComplete();
+        assertEquals(List.of("第二个"), result);
+        assertEquals(new ModelBulkhead.Status(0, 0), bulkhead.status("qwen3"));
+        running.dispose();
+    }
+
+    @Test
+    void stream_ShouldRejectWhenQueueIsFull() {
+        ModelBulkhead bulkhead = bulkhead(1, 1, 1, 10_000);
+        Disposable running = bulkhead.stream("qwen3", 1L, Flux::never).subscribe();
+        Disposable waiting = bulkhead.stream("qwen3", 2L, Flux::never).subscribe();
+
+        ModelBusyException error = assertThrows(ModelBusyException.class,
+                () -> bulkhead.stream("qwen3", 3L, () -> Flux.just("x")).blockLast(TIMEOUT));
+        assertEquals(7, error.getRetryAfterSeconds());
+
+        running.dispose();
+        waiting.dispose();
+        assertEquals(new ModelBulkhead.Status(0, 0), bulkhead.status("qwen3"));
+    }
+
+    @Test
+    void stream_ShouldLimitQueuedRequestsPerUser() {
+        ModelBulkhead bulkhead = bulkhead(1, 4, 1, 10_000);
+        Disposable running = bulkhead.stream("qwen3", 1L, Flux::never).subscribe();
+        Disposable waiting = bulkhead.stream("qwen3", 2L, Flux::never).subscribe();
+
+        // 同一用户的第二个排队请求被拒绝，其他用户仍可排队
+        assertThrows(ModelBusyException.class,
+                () -> bulkhead.stream("qwen3", 2L, () -> Flux.just("x")).blockLast(TIMEOUT));
+        Disposable other = bulkhead.stream("qwen3", 3L, Flux::never).subscribe();
+        assertEquals(new ModelBulkhead.Status(1, 2), bulkhead.status("qwen3"));
+
+        running.dispose();
+        waiting.dispose();
+        other.dispose();
+    }
+
+    @Test
+    void call_ShouldRejectAfterQueueTimeout() {
+        ModelBulkhead bulkhead = bulkhead(1, 1, 1, 50);
+        Disposable running = bulkhead.stream("qwen3", 1L, Flux::never).subscribe();
+
+        assertThrows(ModelBusyException.class, () -> bulkhead.call("qwen3", 2L, () -> "x"));
+        assertEquals(new ModelBulkhead.Status(1, 0), bulkhead.status("qwen3"));
+
+        running.dispose();
+        assertEquals("x", bulkhead.call("qwen3", 2L, () -> "x"));
+    }
+
+    private ModelBulkhead bulkhead(int maxConcurrency, int maxQueued, int maxQueuedPerUser, long queueTimeoutMilliseconds) {
+        ModelProperties.ModelOption option = new ModelProperties.ModelOption();
+        option.setModel("qwen3:4b");
+        option.setMaxConcurrency(maxConcurrency);
+        option.setMaxQueued(maxQueued);
+        option.setMaxQueuedPerUser(maxQueuedPerUser);
+        option.setQueueTimeoutMilliseconds(queueTimeoutMilliseconds);
+        option.setRetryAfterSeconds(7);
+        ModelProperties modelProperties = new ModelProperties();
+        modelProperties.setOptions(Map.of("qwen3", option));
+        return new ModelBulkhead(modelProperties, new SimpleMeterRegistry());
+    }
+}
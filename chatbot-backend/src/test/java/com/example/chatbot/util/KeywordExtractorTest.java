@@ -1,6 +1,7 @@
 package com.example.chatbot.util;
 
 import com.example.chatbot.properties.KeywordExtractorProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -28,6 +29,8 @@ class KeywordExtractorTest {
 //        when(properties.getDefaultKeywordCount()).thenReturn(5);
 //        when(properties.getCommonPhrases()).thenReturn(Arrays.asList("人工智能", "机器学习"));
 //        when(properties.getStopWords()).thenReturn(Arrays.asList("的", "了", "是", "在", "和"));
+        when(properties.getCacheMaximumWeight()).thenReturn(100_000L);
+        when(properties.getCacheExpireAfterWriteMinutes()).thenReturn(60L);
 
         keywordExtractor = new KeywordExtractor(properties);
     }
@@ -96,6 +99,40 @@ class KeywordExtractorTest {
         assertTrue(keywords.isEmpty());
     }
 
+    @Test
+    void extractKeywordsFromArticle_ShouldReturnSameKeywordsInParallelMode() {
+        StringBuilder article = new StringBuilder("人工智能与机器学习入门");
+        String[] sections = {
+                "人工智能是当前最热门的技术领域。",
+                "机器学习在其中扮演着重要角色。",
+                "深度学习是机器学习的重要分支。",
+                "自然语言处理和计算机视觉应用广泛。"
+        };
+        // 每段内容都不同，段落之间不会共用缓存的结果
+        for (int i = 0; i < 40; i++) {
+            article.append("\n\n第").append(i + 1).append("节：").append(sections[i % sections.length]);
+        }
+        int maxKeywords = 5;
+
+        // 关闭缓存，并行的结果由各段重新提取合并得到，不会读到串行时缓存的段落结果
+        when(properties.getCacheMaximumWeight()).thenReturn(0L);
+        KeywordExtractor serialExtractor = new KeywordExtractor(properties);
+        KeywordExtractor parallelExtractor = new KeywordExtractor(properties);
+        try {
+            // 阈值为0时始终串行，为1时任何文章都并行处理
+            when(properties.getArticleParallelThreshold()).thenReturn(0);
+            List<String> serial = serialExtractor.extractKeywordsFromArticle(article.toString(), maxKeywords);
+            when(properties.getArticleParallelThreshold()).thenReturn(1);
+            List<String> parallel = parallelExtractor.extractKeywordsFromArticle(article.toString(), maxKeywords);
+
+            assertFalse(serial.isEmpty());
+            assertEquals(serial, parallel);
+        } finally {
+            serialExtractor.shutdown();
+            parallelExtractor.shutdown();
+        }
+    }
+
     @Test
     void extractKeywords_ShouldRespectMaxKeywordsLimit() {
         // 准备测试数据
@@ -110,4 +147,18 @@ class KeywordExtractorTest {
         assertNotNull(keywords);
         assertEquals(maxKeywords, keywords.size());
     }
+
+    @Test
+    void extractKeywords_ShouldCacheByTextAndKeywordCountSeparately() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        keywordExtractor.bindTo(registry);
+
+        // 文本与数量拼接后相同的两个请求不能共用缓存
+        List<String> first = keywordExtractor.extractKeywords("机器学习1", 2);
+        keywordExtractor.extractKeywords("机器学习", 12);
+        assertEquals(first, keywordExtractor.extractKeywords("机器学习1", 2));
+
+        assertEquals(1, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(2, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
 } 
\ No newline at end of file
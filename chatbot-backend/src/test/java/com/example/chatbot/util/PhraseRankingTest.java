@@ -0,0 +1,123 @@
+package com.example.chatbot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhraseRankingTest {
+
+    @Test
+    void matches_ShouldAcceptSubstringsAndSuperstringsOfRankedPhrases() {
+        PhraseRanking ranking = new PhraseRanking(List.of("人工智能", "机器学习", "OfficePro 2023"));
+
+        // 是关键词的子串
+        assertTrue(ranking.matches("智能"));
+        assertTrue(ranking.matches("Pro 20"));
+        // 包含关键词
+        assertTrue(ranking.matches("机器学习算法"));
+        assertTrue(ranking.matches("安装OfficePro 2023"));
+        // 两个关键词拼接的一部分不算
+        assertFalse(ranking.matches("智能机器"));
+        assertFalse(ranking.matches("深度学习"));
+
+        assertEquals(1, ranking.rankOf("机器学习"));
+        assertEquals(-1, ranking.rankOf("智能"));
+    }
+
+    @Test
+    void select_ShouldOrderByLengthThenRankThenPosition() {
+        List<String> phrases = List.of("数据分析", "Python", "安装指南", "数据", "Python", "分析报告", "学");
+        String text = String.join(" ", phrases);
+        List<String> ranked = List.of("分析报告", "Python", "数据分析");
+
+        List<String> keywords = PhraseRanking.select(phrases, text, ranked, 1, 10);
+
+        // 重复的词组保留，单字词和不匹配的词组去掉
+        assertEquals(List.of("Python", "Python", "分析报告", "数据分析", "数据"), keywords);
+        assertEquals(List.of("Python", "Python"), PhraseRanking.select(phrases, text, ranked, 4, 2));
+    }
+
+    @Test
+    void select_ShouldReturnSameKeywordsAsPairwiseMatching() {
+        Random random = new Random(42);
+        for (int round = 0; round < 5_000; round++) {
+            List<String> phrases = new ArrayList<>();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                phrases.add(randomWord(random, 6));
+            }
+            List<String> ranked = new ArrayList<>();
+            for (int i = random.nextInt(8); i > 0; i--) {
+                ranked.add(!phrases.isEmpty() && random.nextBoolean()
+                        ? phrases.get(random.nextInt(phrases.size()))
+                        : randomWord(random, 7));
+            }
+            String text = String.join(" ", phrases);
+            int minLength = random.nextInt(4);
+            int maxKeywords = 1 + random.nextInt(10);
+
+            List<String> expected = pairwise(phrases, text, ranked, minLength, maxKeywords);
+            // 阈值为0时始终使用自动机，默认阈值下这些小输入逐对比较
+            assertEquals(expected, PhraseRanking.select(phrases, text, ranked, minLength, maxKeywords, 0),
+                    () -> "phrases=" + phrases + ", ranked=" + ranked);
+            assertEquals(expected, PhraseRanking.select(phrases, text, ranked, minLength, maxKeywords),
+                    () -> "phrases=" + phrases + ", ranked=" + ranked);
+        }
+    }
+
+    @Test
+    void select_ShouldSortLargeMixedCandidateSets() {
+        Random random = new Random(7);
+        List<String> phrases = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            phrases.add(randomWord(random, 6));
+        }
+        List<String> ranked = new ArrayList<>(phrases.subList(0, 40));
+        String text = String.join(" ", phrases);
+
+        // 原先的比较规则不满足传递性，这样的输入会让排序抛出IllegalArgumentException
+        List<String> keywords = PhraseRanking.select(phrases, text, ranked, 1, phrases.size());
+
+        assertEquals(pairwise(phrases, text, ranked, 1, phrases.size()), keywords);
+    }
+
+    // 逐对比较子串，排序时重复查找排名和位置，比较规则与PhraseRanking相同
+    private static List<String> pairwise(List<String> phrases, String text, List<String> ranked,
+                                         int minLength, int maxKeywords) {
+        return phrases.stream()
+                .filter(phrase -> phrase.length() >= 2)
+                .filter(phrase -> ranked.stream()
+                        .anyMatch(r -> r.contains(phrase) || phrase.contains(r)))
+                .sorted((a, b) -> {
+                    int lengthCompare = Integer.compare(b.length(), a.length());
+                    if (lengthCompare != 0) {
+                        return lengthCompare;
+                    }
+                    int aIndex = ranked.indexOf(a);
+                    int bIndex = ranked.indexOf(b);
+                    if ((aIndex == -1) != (bIndex == -1)) {
+                        return aIndex == -1 ? 1 : -1;
+                    }
+                    if (aIndex != -1) {
+                        return Integer.compare(aIndex, bIndex);
+                    }
+                    return Integer.compare(text.indexOf(a), text.indexOf(b));
+                })
+                .filter(phrase -> phrase.length() > minLength)
+                .limit(maxKeywords)
+                .collect(Collectors.toList());
+    }
+
+    // 字符集很小，词组之间经常互为子串
+    private static String randomWord(Random random, int maxLength) {
+        StringBuilder word = new StringBuilder();
+        for (int i = random.nextInt(maxLength) + 1; i > 0; i--) {
+            word.append("数据分析".charAt(random.nextInt(3)));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReciprocalRankFusionTest {
+
+    @Test
+    void ranked_ShouldPreferDocsFoundByMultipleSources() {
+        ReciprocalRankFusion fusion = new ReciprocalRankFusion();
+        fusion.add("Redis", List.of(doc(1L, null), doc(2L, null)));
+        fusion.add("Vector", List.of(doc(3L, 0.95), doc(2L, 0.91)));
+        fusion.add("Keyword", List.of(doc(4L, null)));
+
+        List<ReciprocalRankFusion.Candidate> ranked = fusion.ranked(0);
+
+        assertEquals(4, fusion.size());
+        assertEquals(List.of(2L, 1L, 3L, 4L), ranked.stream().map(c -> c.getDoc().getId()).toList());
+        assertEquals(List.of("Redis", "Vector"), ranked.get(0).getSources());
+        assertEquals(0.91, ranked.get(0).getSimilarity());
+        assertEquals(1.0 / 62 + 1.0 / 62, ranked.get(0).getFusedScore(), 1e-12);
+    }
+
+    @Test
+    void ranked_ShouldKeepFirstCopyAndLimitToTopK() {
+        ReciprocalRankFusion fusion = new ReciprocalRankFusion(10);
+        KnowledgeBase first = doc(1L, null);
+        fusion.add("Redis", List.of(first, doc(1L, null), doc(2L, null)));
+        fusion.add("Keyword", List.of(doc(3L, null), doc(1L, null)));
+
+        List<ReciprocalRankFusion.Candidate> ranked = fusion.ranked(2);
+
+        // 同一路中重复的文档只计一次，文档内容保留最先加入的一份
+        assertEquals(List.of(1L, 3L), ranked.stream().map(c -> c.getDoc().getId()).toList());
+        assertSame(first, ranked.get(0).getDoc());
+        assertEquals(1.0 / 11 + 1.0 / 12, ranked.get(0).getFusedScore(), 1e-12);
+    }
+
+    private KnowledgeBase doc(Long id, Double score) {
+        KnowledgeBase doc = new KnowledgeBase();
+        doc.setId(id);
+        doc.setTitle("文档" + id);
+        doc.setScore(score);
+        return doc;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.properties.KeywordExtractorProperties;
+import com.hankcs.hanlp.seg.Dijkstra.DijkstraSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmenterPoolTest {
+    private static final List<String> MESSAGES = List.of(
+            "OfficePro 2023安装的时候提示缺少组件怎么办？",
+            "打印机连接正常但是无法打印文档，应该怎么排查",
+            "Photoshop怎么制作一寸证件照，背景换成蓝色",
+            "MySQL主从复制延迟很高，有什么高可用方案推荐吗",
+            "如何用Python做数据分析，需要先学习哪些库",
+            "Docker容器化部署Spring Boot应用的步骤是什么",
+            "机器学习和深度学习的区别是什么，人工智能入门该怎么学");
+
+    @Test
+    void seg_ShouldReuseBoundedNumberOfSegmenters() {
+        List<DijkstraSegment> created = new ArrayList<>();
+        SegmenterPool pool = new SegmenterPool(2, () -> {
+            DijkstraSegment segment = new DijkstraSegment();
+            created.add(segment);
+            return segment;
+        });
+
+        for (String message : MESSAGES) {
+            assertFalse(pool.seg(message).isEmpty());
+        }
+        assertEquals(2, created.size());
+        assertEquals(2, pool.available());
+    }
+
+    @Test
+    void extractKeywords_ShouldProduceIdenticalOutputUnderParallelLoad() throws Exception {
+        KeywordExtractorProperties properties = new KeywordExtractorProperties();
+        properties.setMinWordLength(3);
+        properties.setStopWords(List.of("的", "了", "和", "是", "在", "我", "有", "这", "个", "们"));
+        properties.setCommonPhrases(List.of("人工智能", "OfficePro 2023", "Python", "MySQL", "高可用", "机器学习", "证件照", "Docker"));
+        // 关闭缓存，每次调用都实际分词
+        properties.setCacheMaximumWeight(0);
+        properties.setSegmenterPoolSize(4);
+        KeywordExtractor extractor = new KeywordExtractor(properties);
+
+        Map<String, List<String>> expected = new ConcurrentHashMap<>();
+        for (String message : MESSAGES) {
+            expected.put(message, extractor.extractKeywords(message, 3));
+        }
+
+        int threads = 8;
+        int rounds = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int mismatches = 0;
+                    for (int i = 0; i < rounds; i++) {
+                        String message = MESSAGES.get((i + offset) % MESSAGES.size());
+                        if (!expected.get(message).equals(extractor.extractKeywords(message, 3))) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                assertEquals(0, future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.chatbot.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseFrameCoalescerTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void coalesce_ShouldEmitWhenByteThresholdIsReached() {
+        // 等待时间足够长，只能按字节数发送，剩余部分在结束时发送
+        List<String> frames = SseFrameCoalescer.coalesce(Flux.just("ab", "cd", "ef"), 4, Duration.ofMinutes(1))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertEquals(List.of("abcd", "ef"), frames);
+    }
+
+    @Test
+    void coalesce_ShouldCountUtf8Bytes() {
+        // 每个汉字占三个字节，两个汉字即超过五字节的上限
+        List<String> frames = SseFrameCoalescer.coalesce(Flux.just("你", "好", "世", "界"), 5, Duration.ofMinutes(1))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertEquals(List.of("你好", "世界"), frames);
+        assertEquals(4, SseFrameCoalescer.utf8Length("😀"));
+    }
+
+    @Test
+    void coalesce_ShouldEmitPendingChunksAfterMaxDelay() throws InterruptedException {
+        Sinks.Many<String> chunks = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> frames = new CopyOnWriteArrayList<>();
+        Disposable subscription = SseFrameCoalescer.coalesce(chunks.asFlux(), 1024, Duration.ofMillis(20))
+                .subscribe(frames::add);
+
+        chunks.tryEmitNext("你");
+        chunks.tryEmitNext("好");
+        awaitSize(frames, 1);
+        assertEquals(List.of("你好"), frames);
+
+        // 下一帧重新开始计时
+        chunks.tryEmitNext("世界");
+        awaitSize(frames, 2);
+        assertEquals(List.of("你好", "世界"), frames);
+
+        chunks.tryEmitComplete();
+        subscription.dispose();
+    }
+
+    @Test
+    void coalesce_ShouldFlushPendingChunksBeforeError() {
+        Flux<String> failing = Flux.just("a", "b").concatWith(Flux.error(new IllegalStateException("boom")));
+        List<String> frames = new CopyOnWriteArrayList<>();
+
+        assertThrows(IllegalStateException.class,
+                () -> SseFrameCoalescer.coalesce(failing, 1024, Duration.ofMinutes(1))
+                        .doOnNext(frames::add)
+                        .blockLast(TIMEOUT));
+        assertEquals(List.of("ab"), frames);
+    }
+
+    @Test
+    void coalesce_ShouldPassThroughWhenDelayIsZero() {
+        List<String> frames = SseFrameCoalescer.coalesce(Flux.just("a", "b"), 1024, Duration.ZERO)
+                .collectList()
+                .block(TIMEOUT);
+
+        assertEquals(List.of("a", "b"), frames);
+    }
+
+    private void awaitSize(List<String> frames, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (frames.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chatbot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TermDictionaryTest {
+
+    @Test
+    void classify_ShouldReturnFlagOfConfiguredEntries() {
+        TermDictionary dictionary = TermDictionary.compile(
+                List.of("人工智能", "OfficePro 2023", "机器学习"), List.of("的", "了", "是"));
+
+        assertEquals(6, dictionary.size());
+        assertEquals(TermDictionary.PHRASE, dictionary.classify("人工智能"));
+        assertEquals(TermDictionary.PHRASE, dictionary.classify("OfficePro 2023"));
+        assertEquals(TermDictionary.STOP_WORD, dictionary.classify("的"));
+        assertTrue(dictionary.isStopWord("是"));
+        // 只匹配完整的词条
+        assertEquals(TermDictionary.NONE, dictionary.classify("人工"));
+        assertEquals(TermDictionary.NONE, dictionary.classify("人工智能的"));
+        assertEquals(TermDictionary.NONE, dictionary.classify(""));
+    }
+
+    @Test
+    void classify_ShouldPreferPhraseWhenWordIsBoth() {
+        TermDictionary dictionary = TermDictionary.compile(List.of("中"), List.of("中", "和"));
+
+        assertTrue(dictionary.isPhrase("中"));
+        assertTrue(dictionary.isStopWord("和"));
+    }
+
+    @Test
+    void classify_ShouldTreatExternalDictionaryWordsAsPhrases() {
+        Set<String> external = Set.of("自然语言处理", "的");
+        TermDictionary dictionary = TermDictionary.compile(List.of("人工智能"), List.of("的"), external::contains);
+
+        assertEquals(TermDictionary.PHRASE, dictionary.classify("自然语言处理"));
+        // 配置的停用词优先于外部词典
+        assertEquals(TermDictionary.STOP_WORD, dictionary.classify("的"));
+        assertEquals(TermDictionary.NONE, dictionary.classify("机器学习"));
+        assertEquals(TermDictionary.PHRASE, TermDictionary.compile(null, null, external::contains).classify("自然语言处理"));
+    }
+
+    @Test
+    void classify_ShouldHandleEmptyConfiguration() {
+        TermDictionary dictionary = TermDictionary.compile(List.of(), null);
+
+        assertEquals(0, dictionary.size());
+        assertEquals(TermDictionary.NONE, dictionary.classify("人工智能"));
+    }
+}
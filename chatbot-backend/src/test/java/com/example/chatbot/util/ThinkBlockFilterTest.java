@@ -0,0 +1,93 @@
+package com.example.chatbot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThinkBlockFilterTest {
+
+    @Test
+    void accept_ShouldRemoveThinkBlockAndLeadingWhitespace() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+
+        String visible = filter.accept("<think>\n用户在问候\n</think>\n\n你好，我是强哥。");
+
+        assertEquals("你好，我是强哥。", visible);
+        assertEquals("", filter.finish());
+        assertEquals("你好，我是强哥。", filter.getText());
+    }
+
+    @Test
+    void accept_ShouldHandleTagsSplitAcrossChunks() {
+        String response = "<think>先想一想 <b>重点</b></think>\n答案是 <b>42</b>，a<b 也保留";
+
+        // 以任意长度切分输出，结果都应与整体处理一致
+        for (int size = 1; size <= response.length(); size++) {
+            ThinkBlockFilter filter = new ThinkBlockFilter();
+            StringBuilder streamed = new StringBuilder();
+            for (int i = 0; i < response.length(); i += size) {
+                streamed.append(filter.accept(response.substring(i, Math.min(response.length(), i + size))));
+            }
+            streamed.append(filter.finish());
+
+            assertEquals("答案是 <b>42</b>，a<b 也保留", streamed.toString(), "chunk size " + size);
+            assertEquals(streamed.toString(), filter.getText());
+        }
+    }
+
+    @Test
+    void accept_ShouldDropReasoningWithoutOpeningTag() {
+        // 聊天模板把<think>放在提示词中时，模型输出只有结束标签
+        String response = "用户在问候，<b>友好</b>回应即可。\n</think>\n\n你好，我是强哥。";
+
+        for (int size = 1; size <= response.length(); size++) {
+            ThinkBlockFilter filter = new ThinkBlockFilter();
+            StringBuilder streamed = new StringBuilder();
+            for (int i = 0; i < response.length(); i += size) {
+                streamed.append(filter.accept(response.substring(i, Math.min(response.length(), i + size))));
+            }
+            streamed.append(filter.finish());
+
+            assertEquals("你好，我是强哥。", streamed.toString(), "chunk size " + size);
+            assertEquals("你好，我是强哥。", filter.getText());
+        }
+    }
+
+    @Test
+    void finish_ShouldReleaseOutputWithoutAnyTag() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+
+        // 第一个标签出现之前的输出暂存，结束时仍没有标签则全部可见
+        assertEquals("", filter.accept("直接回答，"));
+        assertEquals("", filter.accept("没有思考块"));
+        assertEquals("直接回答，没有思考块", filter.finish());
+        assertEquals("直接回答，没有思考块", filter.getText());
+    }
+
+    @Test
+    void accept_ShouldReturnSameChunkOutsideThinkBlock() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+        filter.accept("<think></think>开头");
+        String chunk = "没有标签的片段";
+
+        assertSame(chunk, filter.accept(chunk));
+    }
+
+    @Test
+    void finish_ShouldReleaseIncompleteTagAsText() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+
+        assertEquals("", filter.accept("x <thi"));
+        assertEquals("x <thi", filter.finish());
+        assertEquals("x <thi", filter.getText());
+    }
+
+    @Test
+    void finish_ShouldDropUnclosedThinkBlock() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+
+        assertEquals("", filter.accept("<think>还没想完</thi"));
+        assertEquals("", filter.finish());
+        assertEquals("", filter.getText());
+    }
+}
@@ -1,4 +1,5 @@
 import request from '@/utils/request'
+import axios from 'axios'
 import type { AxiosProgressEvent } from 'axios'
 
 export interface ChatRequest {
@@ -11,12 +12,75 @@ export interface ChatResponse {
   message: string
   modelId: string
   sessionId: string
+  messageId?: string // 回答ID，断线后用于续传
+  sequence?: number  // 帧在回答中的序号，从1开始
 }
 
 export interface ChatHistoryItem {
   role: string
   message: string
   modelId?: string
+  truncated?: boolean // 客户端断开后保存的不完整回答
+}
+
+const MAX_RESUME_ATTEMPTS = 3 // 连接中断后最多续传的次数
+const RESUME_DELAY_MS = 1000   // 每次续传前等待的时间，逐次加倍
+
+// 连接中断或超时，没有收到服务端的响应
+const isConnectionError = (error: unknown) => axios.isAxiosError(error) && !error.response
+
+// 按SSE格式解析响应：事件之间以空行分隔，id为帧序号，data为ChatResponse的JSON
+const createEventStreamReader = (onEvent: (id: number | undefined, data: string) => void) => {
+  let offset = 0
+  let buffer = ''
+  return (progressEvent: AxiosProgressEvent) => {
+    // response是从请求开始收到的全部内容，只处理新增的部分
+    const text: string = progressEvent.event?.target?.response ?? ''
+    buffer += text.slice(offset)
+    offset = text.length
+
+    const events = buffer.split(/\r?\n\r?\n/)
+    // 最后一段可能还没有收完，留到下次处理
+    buffer = events.pop() ?? ''
+    for (const event of events) {
+      let id: number | undefined
+      const dataLines: string[] = []
+      for (const line of event.split(/\r?\n/)) {
+        if (line.startsWith('id:')) {
+          id = Number(line.slice(3).trim())
+        } else if (line.startsWith('data:')) {
+          dataLines.push(line.slice(5).replace(/^ /, ''))
+        }
+      }
+      if (dataLines.length === 0) continue
+      try {
+        onEvent(Number.isNaN(id) ? undefined : id, dataLines.join('\n'))
+      } catch (e) {
+        console.error('Failed to parse streaming chunk:', e, 'chunk:', event)
+      }
+    }
+  }
+}
+
+// 从最后收到的帧之后续传回答，服务端已经结束或丢弃该回答时不再重试
+const resumeStreaming = async (
+  messageId: string,
+  lastSequence: () => number,
+  onEvent: (id: number | undefined, data: string) => void
+) => {
+  for (let attempt = 1; ; attempt++) {
+    await new Promise(resolve => setTimeout(resolve, RESUME_DELAY_MS * 2 ** (attempt - 1)))
+    try {
+      await request.get<void>(`/api/chat/send/reactive/${messageId}`, {
+        headers: { 'Last-Event-ID': String(lastSequence()) },
+        responseType: 'stream',
+        onDownloadProgress: createEventStreamReader(onEvent)
+      })
+      return
+    } catch (error) {
+      if (attempt >= MAX_RESUME_ATTEMPTS || !isConnectionError(error)) throw error
+    }
+  }
 }
 
 export const chatApi = {
@@ -35,56 +99,32 @@ export const chatApi = {
     return request.post<ChatResponse>('/api/chat/send', data)
   },
 
-  // 发送流式消息
-  sendMessageStreaming: (data: ChatRequest, onChunk: (chunk: ChatResponse) => void) => {
-    let buffer = '' // 用于存储未完成的数据
-    let processedMessages = new Set() // 用于跟踪已处理的消息
-    return request.post<ChatResponse>('/api/chat/send/reactive', data, {
-      responseType: 'stream',
-      onDownloadProgress: (progressEvent: AxiosProgressEvent) => {
-        const chunk = progressEvent.event?.target?.response
-        if (chunk) {
-          try {
-            // 将新数据添加到缓冲区
-            buffer += chunk
-            
-            // 处理所有可能的完整消息
-            while (buffer.includes('data:')) {
-              // 找到第一个 data: 的位置
-              const dataStart = buffer.indexOf('data:')
-              if (dataStart === -1) break
-              
-              // 找到下一个 data: 的位置，如果没有则使用缓冲区末尾
-              const nextDataStart = buffer.indexOf('data:', dataStart + 5)
-              const messageEnd = nextDataStart === -1 ? buffer.length : nextDataStart
-              
-              // 提取当前消息
-              const message = buffer.slice(dataStart, messageEnd).trim()
-              buffer = buffer.slice(messageEnd)
-              
-              if (message.startsWith('data:')) {
-                try {
-                  const jsonStr = message.slice(5).trim() // 跳过 'data:' 并去除空白字符
-                  if (jsonStr && jsonStr !== 'data:') { // 确保不是空字符串或单独的 data:
-                    const response = JSON.parse(jsonStr)
-                    // 使用消息内容、会话ID和序列号组合作为唯一标识
-                    const messageKey = `${response.message}-${response.sessionId}-${response.sequence}`
-                    if (!processedMessages.has(messageKey)) {
-                      processedMessages.add(messageKey)
-                      onChunk(response)
-                    }
-                  }
-                } catch (e) {
-                  console.error('Failed to parse streaming chunk:', e, 'chunk:', message)
-                }
-              }
-            }
-          } catch (e) {
-            console.error('Failed to process streaming chunks:', e)
-          }
-        }
+  // 发送流式消息，连接中断时携带Last-Event-ID续传同一个回答，不会重新生成
+  sendMessageStreaming: async (data: ChatRequest, onChunk: (chunk: ChatResponse) => void) => {
+    let messageId: string | undefined
+    let lastSequence = 0
+    const handleEvent = (id: number | undefined, json: string) => {
+      const response: ChatResponse = JSON.parse(json)
+      const sequence = id ?? response.sequence
+      // 续传从Last-Event-ID之后补发，序号不大于已收到的帧是重复帧
+      if (sequence !== undefined) {
+        if (sequence <= lastSequence) return
+        lastSequence = sequence
       }
-    })
+      messageId = response.messageId ?? messageId
+      onChunk(response)
+    }
+
+    try {
+      await request.post<void>('/api/chat/send/reactive', data, {
+        responseType: 'stream',
+        onDownloadProgress: createEventStreamReader(handleEvent)
+      })
+    } catch (error) {
+      // 还没收到回答ID或服务端返回了错误状态时无法续传
+      if (!messageId || !isConnectionError(error)) throw error
+      await resumeStreaming(messageId, () => lastSequence, handleEvent)
+    }
   },
 
   // 删除会话
@@ -26,4 +26,7 @@ public class KnowledgeBase {
     
     @TableLogic
     private Integer deleted;
+
+    @TableField(exist = false)
+    private Double score; // 向量检索的相似度，只在相似检索的结果中返回
 } 
\ No newline at end of file
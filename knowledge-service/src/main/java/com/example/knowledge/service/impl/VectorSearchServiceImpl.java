@@ -32,6 +32,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -163,23 +165,25 @@ public class VectorSearchServiceImpl implements VectorSearchService {
                 return new ArrayList<>();
             }
 
-            // 过滤相似度分数低于阈值的结果
+            // 过滤相似度分数低于阈值的结果，保留Milvus返回的相似度顺序
             SearchResultsWrapper wrapper = new SearchResultsWrapper(resp.getData().getResults());
-            List<Long> ids = wrapper.getIDScore(0).stream()
-                    .filter(idScore -> idScore.getScore() > scoreThreshold)
-                    .map(SearchResultsWrapper.IDScore::getLongID)
-                    .toList();
+            Map<Long, Double> scores = new LinkedHashMap<>();
+            for (SearchResultsWrapper.IDScore idScore : wrapper.getIDScore(0)) {
+                if (idScore.getScore() > scoreThreshold) {
+                    scores.put(idScore.getLongID(), (double) idScore.getScore());
+                }
+            }
 
-            if (!ids.isEmpty()) {
+            if (!scores.isEmpty()) {
                 // 先从Redis缓存中查找
-                List<KnowledgeBase> results = new ArrayList<>();
+                Map<Long, KnowledgeBase> found = new HashMap<>();
                 List<Long> missingIds = new ArrayList<>();
                 
-                for (Long id : ids) {
+                for (Long id : scores.keySet()) {
                     KnowledgeBase cachedDoc = (KnowledgeBase) redisService.getRedisTemplate()
                             .opsForValue().get(KNOWLEDGE_DATA_KEY + id);
                     if (cachedDoc != null) {
-                        results.add(cachedDoc);
+                        found.put(id, cachedDoc);
                     } else {
                         missingIds.add(id);
                     }
@@ -187,10 +191,20 @@ public class VectorSearchServiceImpl implements VectorSearchService {
 
                 // 如果Redis中没有找到所有文档，则从数据库中查询缺失的文档
                 if (!missingIds.isEmpty()) {
-                    List<KnowledgeBase> dbResults = knowledgeBaseMapper.findByIds(missingIds);
-                    results.addAll(dbResults);
+                    for (KnowledgeBase doc : knowledgeBaseMapper.findByIds(missingIds)) {
+                        found.put(doc.getId(), doc);
+                    }
                 }
-                
+
+                // 按相似度从高到低返回，并附带相似度供调用方融合排序
+                List<KnowledgeBase> results = new ArrayList<>(found.size());
+                scores.forEach((id, score) -> {
+                    KnowledgeBase doc = found.get(id);
+                    if (doc != null) {
+                        doc.setScore(score);
+                        results.add(doc);
+                    }
+                });
                 return results;
             }
             return new ArrayList<>();